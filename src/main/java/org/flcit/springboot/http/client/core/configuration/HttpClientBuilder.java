@@ -23,12 +23,27 @@ import java.util.List;
 
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.util.PublicSuffixMatcherLoader;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.ssl.SSLContexts;
 import org.flcit.commons.core.util.BooleanUtils;
 import org.flcit.commons.core.util.ObjectUtils;
+import org.flcit.springboot.http.client.core.interceptor.limit.ConcurrencyLimitClientHttpRequestInterceptor;
+import org.flcit.springboot.http.client.core.interceptor.loadbalancer.LoadBalancerClientHttpRequestInterceptor;
+import org.flcit.springboot.http.client.core.interceptor.loadbalancer.LoadBalancerWebServiceMessageSender;
 import org.flcit.springboot.http.client.core.interceptor.logging.BaseLoggingClientInterceptor;
 import org.flcit.springboot.http.client.core.interceptor.logging.LoggingClientHttpRequestInterceptor;
 import org.flcit.springboot.http.client.core.interceptor.logging.LoggingClientInterceptor;
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.HealthProbeConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.DnsRoutePlanner;
 import org.flcit.springboot.http.client.core.util.SSLUtilities;
 import org.springframework.http.client.BufferingClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestFactory;
@@ -36,6 +51,7 @@ import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.util.CollectionUtils;
+import org.springframework.ws.transport.WebServiceMessageSender;
 
 /**
  * 
@@ -44,6 +60,9 @@ import org.springframework.util.CollectionUtils;
  */
 public class HttpClientBuilder extends HttpClientBuilderConfiguration {
 
+    private static final int DEFAULT_MAX_CONNECTION_TOTAL = 20;
+    private static final int DEFAULT_MAX_CONNECTION_PER_ROUTE = 2;
+
     private final ProxyConfiguration proxyConfiguration;
 
     /**
@@ -81,13 +100,56 @@ public class HttpClientBuilder extends HttpClientBuilderConfiguration {
         return CollectionUtils.isEmpty(interceptorsList) ? null : (T[]) interceptorsList.toArray(new Object[0]);
     }
 
+    /**
+     * @param <T>
+     * @param messageSenders Spring-WS message senders
+     * @param url configured url of the client, may be null
+     * @param loadBalancerClient load balancer of the client, may be null
+     * @return the message senders sending to the urls of the load balancer when it is active
+     */
+    @SuppressWarnings("unchecked")
+    public final <T> T[] addMessageSenders(final T[] messageSenders, final String url, final LoadBalancerClient loadBalancerClient) {
+        if (loadBalancerClient == null || !loadBalancerClient.isActive() || org.springframework.util.ObjectUtils.isEmpty(messageSenders)) {
+            return messageSenders;
+        }
+        final T[] res = Arrays.copyOf(messageSenders, messageSenders.length);
+        for (int i = 0; i < res.length; i++) {
+            if (!(res[i] instanceof LoadBalancerWebServiceMessageSender)) {
+                res[i] = (T) new LoadBalancerWebServiceMessageSender((WebServiceMessageSender) res[i], loadBalancerClient, url);
+            }
+        }
+        return res;
+    }
+
     /**
      * @param builderConfiguration
      * @param name
      * @param interceptors
      */
     public final void addClientHttpInterceptors(final HttpClientBuilderConfiguration builderConfiguration, final String name, final List<ClientHttpRequestInterceptor> interceptors) {
+        addClientHttpInterceptors(builderConfiguration, name, interceptors, null, null);
+    }
+
+    /**
+     * @param builderConfiguration
+     * @param name
+     * @param interceptors
+     * @param url configured url of the client, may be null
+     * @param loadBalancerClient load balancer of the client, may be null (when active, the other interceptors are moved into its interceptor)
+     */
+    public final void addClientHttpInterceptors(final HttpClientBuilderConfiguration builderConfiguration, final String name, final List<ClientHttpRequestInterceptor> interceptors, final String url, final LoadBalancerClient loadBalancerClient) {
         addInterceptors(builderConfiguration, name, interceptors, LoggingClientHttpRequestInterceptor.class);
+        if (builderConfiguration.isConcurrencyLimitActive()
+                && org.flcit.commons.core.util.CollectionUtils.indexOf(interceptors, ConcurrencyLimitClientHttpRequestInterceptor.class::isInstance) == -1) {
+            interceptors.add(0, new ConcurrencyLimitClientHttpRequestInterceptor(name, builderConfiguration.getConcurrencyLimit()));
+        }
+        if (loadBalancerClient != null && loadBalancerClient.isActive()
+                && org.flcit.commons.core.util.CollectionUtils.indexOf(interceptors, LoadBalancerClientHttpRequestInterceptor.class::isInstance) == -1) {
+            // THE OTHER INTERCEPTORS RUN ON EVERY ATTEMPT
+            final LoadBalancerClientHttpRequestInterceptor interceptor = new LoadBalancerClientHttpRequestInterceptor(loadBalancerClient, url, interceptors);
+            interceptors.clear();
+            interceptors.add(interceptor);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -123,13 +185,39 @@ public class HttpClientBuilder extends HttpClientBuilderConfiguration {
         return build(builderConfiguration, null);
     }
 
+    /**
+     * @param builderConfiguration
+     * @param firstHttpRequestInterceptor
+     * @param loadBalancerClient load balancer of the client, may be null (its health probes use the SSL, proxy and timeouts of the client,
+     * the Apache client routes its resolved addresses with the host name when dns is active)
+     * @return
+     */
+    public final ClientHttpRequestFactory build(final HttpClientBuilderConfiguration builderConfiguration, final HttpRequestInterceptor firstHttpRequestInterceptor, final LoadBalancerClient loadBalancerClient) {
+        final FailOverConfiguration failOver = loadBalancerClient != null ? loadBalancerClient.getFailOver() : null;
+        final HealthProbeConfiguration healthProbe = failOver != null ? failOver.getHealthProbe() : null;
+        if (healthProbe != null && healthProbe.isActive() && healthProbe.getHttpClient() == null) {
+            final RequestConfig.Builder requestConfigBuilder = RequestConfig.custom();
+            final org.apache.http.impl.client.HttpClientBuilder httpClientBuilder = create(builderConfiguration, null, requestConfigBuilder, loadBalancerClient);
+            // THE PROBE TIMEOUT REPLACES THE TIMEOUTS OF THE CLIENT
+            healthProbe.setHttpClient(httpClientBuilder.setDefaultRequestConfig(requestConfigBuilder
+                    .setConnectTimeout(healthProbe.getTimeout())
+                    .setConnectionRequestTimeout(healthProbe.getTimeout())
+                    .setSocketTimeout(healthProbe.getTimeout())
+                    .build())
+                    .disableAutomaticRetries()
+                    .disableCookieManagement()
+                    .build());
+        }
+        return buildInternal(builderConfiguration, BooleanUtils.isTrueOrNullAndTrue(builderConfiguration.getSimpleClient(), getSimpleClient()) ? buildSimple(builderConfiguration) : buildApache(builderConfiguration, firstHttpRequestInterceptor, loadBalancerClient));
+    }
+
     /**
      * @param builderConfiguration
      * @param firstHttpRequestInterceptor
      * @return
      */
     public final ClientHttpRequestFactory build(final HttpClientBuilderConfiguration builderConfiguration, final HttpRequestInterceptor firstHttpRequestInterceptor) {
-        return buildInternal(builderConfiguration, BooleanUtils.isTrueOrNullAndTrue(builderConfiguration.getSimpleClient(), getSimpleClient()) ? buildSimple(builderConfiguration) : buildApache(builderConfiguration, firstHttpRequestInterceptor));
+        return build(builderConfiguration, firstHttpRequestInterceptor, null);
     }
 
     private final ClientHttpRequestFactory buildInternal(final HttpClientBuilderConfiguration builderConfiguration, final ClientHttpRequestFactory requestFactory) {
@@ -157,16 +245,15 @@ public class HttpClientBuilder extends HttpClientBuilderConfiguration {
         return factory;
     }
 
-    private final ClientHttpRequestFactory buildApache(final HttpClientBuilderConfiguration builderConfiguration, final HttpRequestInterceptor firstHttpRequestInterceptor) {
-        final HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(create(builderConfiguration, firstHttpRequestInterceptor).build());
+    private final ClientHttpRequestFactory buildApache(final HttpClientBuilderConfiguration builderConfiguration, final HttpRequestInterceptor firstHttpRequestInterceptor, final LoadBalancerClient loadBalancerClient) {
+        final HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(create(builderConfiguration, firstHttpRequestInterceptor, RequestConfig.custom(), loadBalancerClient).build());
         if (isStreaming(builderConfiguration) && !isTracesActive()) {
             factory.setBufferRequestBody(false);
         }
         return factory;
     }
 
-    private final org.apache.http.impl.client.HttpClientBuilder create(final HttpClientBuilderConfiguration builderConfiguration, final HttpRequestInterceptor firstHttpRequestInterceptor) {
-        final RequestConfig.Builder requestConfigBuilder = RequestConfig.custom();
+    private final org.apache.http.impl.client.HttpClientBuilder create(final HttpClientBuilderConfiguration builderConfiguration, final HttpRequestInterceptor firstHttpRequestInterceptor, final RequestConfig.Builder requestConfigBuilder, final LoadBalancerClient loadBalancerClient) {
         if (ObjectUtils.hasOrDefault(builderConfiguration.getConnectTimeout(), this.getConnectTimeout())) {
             requestConfigBuilder.setConnectTimeout(ObjectUtils.getOrDefault(builderConfiguration.getConnectTimeout(), this.getConnectTimeout()));
         }
@@ -184,9 +271,22 @@ public class HttpClientBuilder extends HttpClientBuilderConfiguration {
         if (Boolean.FALSE.equals(builderConfiguration.getSslCertificateVerification())) {
             SSLUtilities.disableSSLSecurity(httpClientBuilder);
         }
+        if (loadBalancerClient != null && loadBalancerClient.isDns()) {
+            final DnsRoutePlanner routePlanner = new DnsRoutePlanner(loadBalancerClient);
+            httpClientBuilder.setRoutePlanner(routePlanner).addInterceptorFirst(routePlanner);
+        }
         if (firstHttpRequestInterceptor != null) {
             httpClientBuilder.addInterceptorFirst(firstHttpRequestInterceptor);
         }
+        if (ObjectUtils.hasOrDefault(builderConfiguration.getMinConnectionPerRoute(), this.getMinConnectionPerRoute())) {
+            final Integer maxConnectionTotal = ObjectUtils.getOrDefault(builderConfiguration.getMaxConnectionTotal(), this.getMaxConnectionTotal());
+            final Integer maxConnectionPerRoute = ObjectUtils.getOrDefault(builderConfiguration.getMaxConnectionPerRoute(), this.getMaxConnectionPerRoute());
+            return httpClientBuilder.setConnectionManager(new PartitionedHttpClientConnectionManager(
+                    getSocketFactoryRegistry(builderConfiguration),
+                    maxConnectionTotal != null ? maxConnectionTotal : DEFAULT_MAX_CONNECTION_TOTAL,
+                    maxConnectionPerRoute != null ? maxConnectionPerRoute : DEFAULT_MAX_CONNECTION_PER_ROUTE,
+                    ObjectUtils.getOrDefault(builderConfiguration.getMinConnectionPerRoute(), this.getMinConnectionPerRoute())));
+        }
         if (ObjectUtils.hasOrDefault(builderConfiguration.getMaxConnectionPerRoute(), this.getMaxConnectionPerRoute())) {
             httpClientBuilder.setMaxConnPerRoute(ObjectUtils.getOrDefault(builderConfiguration.getMaxConnectionPerRoute(), this.getMaxConnectionPerRoute()));
         }
@@ -196,4 +296,16 @@ public class HttpClientBuilder extends HttpClientBuilderConfiguration {
         return httpClientBuilder;
     }
 
+    /**
+     * Socket factories the Apache builder creates itself for the same SSL settings (a connection manager set on the builder ignores them).
+     */
+    private static Registry<ConnectionSocketFactory> getSocketFactoryRegistry(final HttpClientBuilderConfiguration builderConfiguration) {
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", Boolean.FALSE.equals(builderConfiguration.getSslCertificateVerification())
+                        ? SSLUtilities.getSSLConnectionSocketFactory()
+                        : new SSLConnectionSocketFactory(SSLContexts.createDefault(), new DefaultHostnameVerifier(PublicSuffixMatcherLoader.getDefault())))
+                .build();
+    }
+
 }
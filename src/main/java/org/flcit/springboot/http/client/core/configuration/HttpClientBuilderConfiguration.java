@@ -30,10 +30,12 @@ public class HttpClientBuilderConfiguration {
     private Integer chunkSize;
     private Integer maxConnectionPerRoute;
     private Integer maxConnectionTotal;
+    private Integer minConnectionPerRoute;
     private Boolean proxy;
     private Boolean streaming;
     private Boolean sslCertificateVerification;
     private HttpClientTracesConfiguration traces;
+    private HttpClientConcurrencyLimitConfiguration concurrencyLimit;
 
     protected Boolean getSimpleClient() {
         return simpleClient;
@@ -101,6 +103,17 @@ public class HttpClientBuilderConfiguration {
         this.maxConnectionPerRoute = maxConnectionPerRoute;
         return this;
     }
+    protected Integer getMinConnectionPerRoute() {
+        return minConnectionPerRoute;
+    }
+    /**
+     * @param minConnectionPerRoute connections kept for each route (Apache client)
+     * @return
+     */
+    public HttpClientBuilderConfiguration setMinConnectionPerRoute(Integer minConnectionPerRoute) {
+        this.minConnectionPerRoute = minConnectionPerRoute;
+        return this;
+    }
     protected Integer getMaxConnectionTotal() {
         return maxConnectionTotal;
     }
@@ -159,6 +172,20 @@ public class HttpClientBuilderConfiguration {
         this.traces = traces;
         return this;
     }
+    protected HttpClientConcurrencyLimitConfiguration getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+    /**
+     * @param concurrencyLimit
+     * @return
+     */
+    public HttpClientBuilderConfiguration setConcurrencyLimit(HttpClientConcurrencyLimitConfiguration concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+        return this;
+    }
+    protected boolean isConcurrencyLimitActive() {
+        return this.concurrencyLimit != null && this.concurrencyLimit.isActive();
+    }
     protected boolean isTracesActive() {
         return this.traces != null && (this.traces.isRequestActive() || this.traces.isResponseActive());
     }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.configuration;
+
+/**
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class HttpClientConcurrencyLimitConfiguration {
+
+    private boolean active;
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 200;
+    private double tolerance = 1.5;
+    private double smoothing = 0.2;
+
+    /**
+     * 
+     */
+    public HttpClientConcurrencyLimitConfiguration() {}
+
+    /**
+     * @param configuration
+     */
+    public HttpClientConcurrencyLimitConfiguration(HttpClientConcurrencyLimitConfiguration configuration) {
+        this.active = configuration.active;
+        this.initialLimit = configuration.initialLimit;
+        this.minLimit = configuration.minLimit;
+        this.maxLimit = configuration.maxLimit;
+        this.tolerance = configuration.tolerance;
+        this.smoothing = configuration.smoothing;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isActive() {
+        return active;
+    }
+    /**
+     * @param active
+     * @return
+     */
+    public HttpClientConcurrencyLimitConfiguration setActive(boolean active) {
+        this.active = active;
+        return this;
+    }
+    /**
+     * @return
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+    /**
+     * @param initialLimit
+     * @return
+     */
+    public HttpClientConcurrencyLimitConfiguration setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+        return this;
+    }
+    /**
+     * @return
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+    /**
+     * @param minLimit
+     * @return
+     */
+    public HttpClientConcurrencyLimitConfiguration setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+        return this;
+    }
+    /**
+     * @return
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+    /**
+     * @param maxLimit
+     * @return
+     */
+    public HttpClientConcurrencyLimitConfiguration setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+        return this;
+    }
+    /**
+     * @return ratio of the current RTT to the long term RTT tolerated before the limit decreases
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+    /**
+     * @param tolerance
+     * @return
+     */
+    public HttpClientConcurrencyLimitConfiguration setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+    /**
+     * @return weight of a new limit (0 to 1)
+     */
+    public double getSmoothing() {
+        return smoothing;
+    }
+    /**
+     * @param smoothing
+     * @return
+     */
+    public HttpClientConcurrencyLimitConfiguration setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+        return this;
+    }
+
+}
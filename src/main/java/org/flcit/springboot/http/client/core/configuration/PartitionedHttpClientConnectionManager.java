@@ -0,0 +1,153 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.configuration;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Pool partitioned by route: each route known by the pool keeps minPerRoute connections in reserve,
+ * the maximum of a route is total - max(minPerRoute, leased) of every other route (within maxPerRoute).
+ * The partition is recomputed when a new route is requested and every {@link #PARTITION_INTERVAL} milliseconds by a shared timer,
+ * requests and releases of known routes take no lock of their own. A route without any connection for routeTtl is forgotten
+ * (ex: address no longer resolved) and its reserve given back.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class PartitionedHttpClientConnectionManager extends PoolingHttpClientConnectionManager {
+
+    static final long ROUTE_TTL = 60000;
+    static final long PARTITION_INTERVAL = 1000;
+
+    private final ConcurrentMap<HttpRoute, AtomicLong> routes = new ConcurrentHashMap<>();
+    private final int maxPerRoute;
+    private final int minPerRoute;
+    private final long routeTtl;
+    private final ScheduledFuture<?> timer;
+
+    PartitionedHttpClientConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry, int maxTotal, int maxPerRoute, int minPerRoute) {
+        this(socketFactoryRegistry, maxTotal, maxPerRoute, minPerRoute, ROUTE_TTL);
+    }
+
+    PartitionedHttpClientConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry, int maxTotal, int maxPerRoute, int minPerRoute, long routeTtl) {
+        super(socketFactoryRegistry);
+        this.maxPerRoute = maxPerRoute;
+        this.minPerRoute = minPerRoute;
+        this.routeTtl = routeTtl;
+        setMaxTotal(maxTotal);
+        setDefaultMaxPerRoute(maxPerRoute);
+        this.timer = Timer.schedule(this);
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        final long now = System.currentTimeMillis();
+        final AtomicLong lastUse = routes.get(route);
+        if (lastUse != null) {
+            lastUse.lazySet(now);
+        } else if (routes.putIfAbsent(route, new AtomicLong(now)) == null) {
+            partition(route);
+        }
+        return super.requestConnection(route, state);
+    }
+
+    @Override
+    public void shutdown() {
+        timer.cancel(false);
+        super.shutdown();
+    }
+
+    synchronized void partition(HttpRoute requested) {
+        final long now = System.currentTimeMillis();
+        final Map<HttpRoute, Integer> reserved = new HashMap<>();
+        int total = 0;
+        for (Iterator<Map.Entry<HttpRoute, AtomicLong>> it = routes.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<HttpRoute, AtomicLong> entry = it.next();
+            final PoolStats stats = getStats(entry.getKey());
+            if (!entry.getKey().equals(requested)
+                    && stats.getLeased() + stats.getPending() + stats.getAvailable() == 0
+                    && now - entry.getValue().get() >= routeTtl) {
+                it.remove();
+                continue;
+            }
+            final int value = Math.max(minPerRoute, stats.getLeased());
+            reserved.put(entry.getKey(), value);
+            total += value;
+        }
+        for (Map.Entry<HttpRoute, Integer> entry : reserved.entrySet()) {
+            setMaxPerRoute(entry.getKey(), Math.max(minPerRoute, Math.min(maxPerRoute, getMaxTotal() - total + entry.getValue())));
+        }
+    }
+
+    /**
+     * One daemon thread for every partitioned pool, a pool no longer referenced stops its task.
+     */
+    private static final class Timer implements Runnable {
+
+        private static final ScheduledThreadPoolExecutor SCHEDULER = scheduler();
+
+        private final WeakReference<PartitionedHttpClientConnectionManager> manager;
+        private volatile ScheduledFuture<?> future;
+
+        private Timer(PartitionedHttpClientConnectionManager manager) {
+            this.manager = new WeakReference<>(manager);
+        }
+
+        private static ScheduledFuture<?> schedule(PartitionedHttpClientConnectionManager manager) {
+            final Timer res = new Timer(manager);
+            res.future = SCHEDULER.scheduleWithFixedDelay(res, PARTITION_INTERVAL, PARTITION_INTERVAL, TimeUnit.MILLISECONDS);
+            return res.future;
+        }
+
+        @Override
+        public void run() {
+            final PartitionedHttpClientConnectionManager value = manager.get();
+            if (value != null) {
+                value.partition(null);
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        private static ScheduledThreadPoolExecutor scheduler() {
+            final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("http-client-partition-");
+            threadFactory.setDaemon(true);
+            final ScheduledThreadPoolExecutor res = new ScheduledThreadPoolExecutor(1, threadFactory);
+            res.setRemoveOnCancelPolicy(true);
+            return res;
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.limit;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import org.flcit.springboot.http.client.core.configuration.HttpClientConcurrencyLimitConfiguration;
+
+/**
+ * One limit per scheme / host / port of the called urls: each url of a load balancer has its own limit.
+ * At most {@link #MAX_LIMITERS} limits: past it, a new authority first removes the limits idle for {@link #IDLE_TIMEOUT} milliseconds,
+ * then every limit without call in flight.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class ConcurrencyLimitClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    static final int MAX_LIMITERS = 256;
+    static final long IDLE_TIMEOUT = 600000;
+
+    private final Map<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final String name;
+    private final HttpClientConcurrencyLimitConfiguration configuration;
+
+    /**
+     * @param name
+     * @param configuration
+     */
+    public ConcurrencyLimitClientHttpRequestInterceptor(String name, HttpClientConcurrencyLimitConfiguration configuration) {
+        this.name = name;
+        this.configuration = new HttpClientConcurrencyLimitConfiguration(configuration);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        final ConcurrencyLimiter limiter = getLimiter(request.getURI());
+        if (!limiter.tryAcquire()) {
+            throw new ConcurrencyLimitExceededException(name, limiter.getLimit());
+        }
+        final long start = System.nanoTime();
+        limiter.lastUse = start;
+        boolean dropped = true;
+        try {
+            final ClientHttpResponse response = execution.execute(request, body);
+            final int status = response.getRawStatusCode();
+            dropped = status == HttpStatus.SERVICE_UNAVAILABLE.value() || status == HttpStatus.TOO_MANY_REQUESTS.value();
+            return response;
+        } finally {
+            limiter.release(System.nanoTime() - start, dropped);
+        }
+    }
+
+    /**
+     * @param uri
+     * @return
+     */
+    public ConcurrencyLimiter getLimiter(URI uri) {
+        final String key = uri.getScheme() + "://" + uri.getRawAuthority();
+        final ConcurrencyLimiter res = limiters.get(key);
+        if (res != null) {
+            return res;
+        }
+        if (limiters.size() >= MAX_LIMITERS) {
+            evict();
+        }
+        return limiters.computeIfAbsent(key, k -> new ConcurrencyLimiter(configuration));
+    }
+
+    private void evict() {
+        final long now = System.nanoTime();
+        limiters.values().removeIf(limiter -> limiter.getInflight() == 0 && now - limiter.lastUse > TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT));
+        if (limiters.size() >= MAX_LIMITERS) {
+            // AN ORPHAN LIMITER STILL COUNTS ITS CALLS IN FLIGHT UNTIL THEY END
+            limiters.values().removeIf(limiter -> limiter.getInflight() == 0);
+        }
+    }
+
+    /**
+     * @return number of limits kept
+     */
+    int size() {
+        return limiters.size();
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.limit;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.flcit.springboot.http.client.core.configuration.HttpClientConcurrencyLimitConfiguration;
+
+/**
+ * Gradient concurrency limit: the limit grows while the RTT of the calls stays close to the long term RTT
+ * and shrinks when it increases (queueing) or when calls are dropped.
+ * The limit is updated by one release at a time without waiting: the RTT of a release finding the update busy is not sampled,
+ * its drop is applied by the next update.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class ConcurrencyLimiter {
+
+    private static final double DROP_DECREASE = 0.9;
+    private static final double LONG_RTT_DECAY = 0.95;
+    private static final int LONG_RTT_WARMUP = 10;
+    private static final int QUEUE_SIZE = 4;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicBoolean droppedPending = new AtomicBoolean();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRtt;
+    private int samples;
+    volatile long lastUse = System.nanoTime();
+
+    /**
+     * @param configuration
+     */
+    public ConcurrencyLimiter(HttpClientConcurrencyLimitConfiguration configuration) {
+        this.minLimit = Math.max(1, configuration.getMinLimit());
+        this.maxLimit = Math.max(this.minLimit, configuration.getMaxLimit());
+        this.tolerance = Math.max(1, configuration.getTolerance());
+        this.smoothing = Math.min(1, Math.max(0, configuration.getSmoothing()));
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, configuration.getInitialLimit()));
+        this.limit = (int) this.estimatedLimit;
+    }
+
+    /**
+     * @return false if the limit is reached
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inflight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * @param rtt nanoseconds
+     * @param dropped
+     */
+    public void release(long rtt, boolean dropped) {
+        final int current = inflight.getAndDecrement();
+        if (!lock.tryLock()) {
+            if (dropped) {
+                droppedPending.set(true);
+            }
+            return;
+        }
+        try {
+            update(rtt, dropped || droppedPending.getAndSet(false), current);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long rtt, boolean dropped, int current) {
+        double newLimit;
+        if (dropped) {
+            newLimit = estimatedLimit * DROP_DECREASE;
+        } else {
+            if (rtt <= 0) {
+                return;
+            }
+            if (samples < LONG_RTT_WARMUP) {
+                samples++;
+                longRtt += (rtt - longRtt) / samples;
+            } else {
+                longRtt += (rtt - longRtt) * 2 / (LONG_RTT_WARMUP * 10 + 1d);
+            }
+            if (longRtt / rtt > 2) {
+                longRtt *= LONG_RTT_DECAY;
+            }
+            // an application limited client does not tell anything about the capacity of the server
+            if (current < estimatedLimit / 2) {
+                return;
+            }
+            final double gradient = Math.max(0.5, Math.min(1, tolerance * longRtt / rtt));
+            newLimit = estimatedLimit * gradient + QUEUE_SIZE;
+            newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * @return
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+
+}
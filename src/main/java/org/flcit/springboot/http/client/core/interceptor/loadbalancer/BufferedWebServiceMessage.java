@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.transport.TransportOutputStream;
+
+/**
+ * Message serialized once (transport headers such as SOAPAction included) and written as is by every attempt.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class BufferedWebServiceMessage implements WebServiceMessage {
+
+    private final WebServiceMessage message;
+    private final List<String[]> headers = new ArrayList<>(2);
+    private final byte[] content;
+
+    BufferedWebServiceMessage(WebServiceMessage message) throws IOException {
+        this.message = message;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TransportOutputStream transport = new BufferTransportOutputStream(out)) {
+            message.writeTo(transport);
+        }
+        this.content = out.toByteArray();
+    }
+
+    @Override
+    public Source getPayloadSource() {
+        return message.getPayloadSource();
+    }
+
+    @Override
+    public Result getPayloadResult() {
+        return message.getPayloadResult();
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (outputStream instanceof TransportOutputStream) {
+            for (String[] header : headers) {
+                ((TransportOutputStream) outputStream).addHeader(header[0], header[1]);
+            }
+        }
+        outputStream.write(content);
+    }
+
+    private final class BufferTransportOutputStream extends TransportOutputStream {
+
+        private final OutputStream out;
+
+        private BufferTransportOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            headers.add(new String[] { name, value });
+        }
+
+        @Override
+        protected OutputStream createOutputStream() {
+            return out;
+        }
+
+    }
+
+}
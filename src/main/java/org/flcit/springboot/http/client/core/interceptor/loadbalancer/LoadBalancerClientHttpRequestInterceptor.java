@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.web.client.ResourceAccessException;
+
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+import org.flcit.springboot.http.client.core.loadbalancer.RetryExecutor;
+
+/**
+ * Sends each request to the url chosen by the {@link LoadBalancerClient} and reports the outcome (ok / fail / release)
+ * through a {@link RetryExecutor}: fail errors and retry status are executed again on another url,
+ * only when they were not sent for a method that is not idempotent (ex: POST, PATCH).
+ * The request url starting with the configured url is rebased on the chosen url, otherwise only the scheme, host and port change.
+ * The interceptors given to the constructor (ex: concurrency limit per url, logging) run on every attempt with the chosen url;
+ * the attempts after the first one are executed without the interceptors registered after this one.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class LoadBalancerClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    private final LoadBalancerClient loadBalancerClient;
+    private final RetryExecutor retryExecutor;
+    private final String url;
+    private final List<ClientHttpRequestInterceptor> interceptors;
+
+    /**
+     * @param loadBalancerClient
+     * @param url configured url of the client (rebased on the chosen url), may be null
+     */
+    public LoadBalancerClientHttpRequestInterceptor(LoadBalancerClient loadBalancerClient, String url) {
+        this(loadBalancerClient, url, null);
+    }
+
+    /**
+     * @param loadBalancerClient
+     * @param url configured url of the client (rebased on the chosen url), may be null
+     * @param interceptors executed in order on every attempt, may be null
+     */
+    public LoadBalancerClientHttpRequestInterceptor(LoadBalancerClient loadBalancerClient, String url, List<ClientHttpRequestInterceptor> interceptors) {
+        this.loadBalancerClient = loadBalancerClient;
+        this.retryExecutor = new RetryExecutor(loadBalancerClient);
+        this.url = url;
+        this.interceptors = interceptors != null ? Collections.unmodifiableList(new ArrayList<>(interceptors)) : Collections.emptyList();
+    }
+
+    /**
+     * @return
+     */
+    public LoadBalancerClient getLoadBalancerClient() {
+        return loadBalancerClient;
+    }
+
+    /**
+     * @return interceptors executed on every attempt
+     */
+    public List<ClientHttpRequestInterceptor> getInterceptors() {
+        return interceptors;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        final ClientHttpResponse[] pending = new ClientHttpResponse[1];
+        try {
+            return retryExecutor.execute(null, null, RetryExecutor.isIdempotent(request.getMethodValue()),
+                    chosen -> execute(request, body, execution, chosen, pending));
+        } catch (StatusException e) {
+            return pending[0];
+        } catch (ResourceAccessException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ClientHttpResponse execute(final HttpRequest request, final byte[] body, final ClientHttpRequestExecution execution,
+            final String chosen, final ClientHttpResponse[] pending) {
+        if (pending[0] != null) {
+            // THE RESPONSE OF THE PREVIOUS ATTEMPT IS RETRIED
+            pending[0].close();
+            pending[0] = null;
+        }
+        try {
+            final HttpRequest attempt = chosen != null ? new RebasedHttpRequest(request, UriRebase.rebase(request.getURI(), url, chosen)) : request;
+            final ClientHttpResponse response = interceptors.isEmpty() ? execution.execute(attempt, body)
+                    : new AttemptExecution(interceptors.iterator(), execution).execute(attempt, body);
+            final int status = response.getRawStatusCode();
+            if (loadBalancerClient.isFail(status, response.getHeaders()) || loadBalancerClient.isRetry(status, response.getHeaders())) {
+                pending[0] = response;
+                throw new StatusException(status, response.getStatusText(), response.getHeaders());
+            }
+            return response;
+        } catch (IOException e) {
+            throw new ResourceAccessException("I/O error on " + request.getMethodValue() + " request for \"" + chosen + "\": " + e.getMessage(), e);
+        }
+    }
+
+    private static final class AttemptExecution implements ClientHttpRequestExecution {
+
+        private final Iterator<ClientHttpRequestInterceptor> iterator;
+        private final ClientHttpRequestExecution execution;
+
+        private AttemptExecution(Iterator<ClientHttpRequestInterceptor> iterator, ClientHttpRequestExecution execution) {
+            this.iterator = iterator;
+            this.execution = execution;
+        }
+
+        @Override
+        public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+            return iterator.hasNext() ? iterator.next().intercept(request, body, this) : execution.execute(request, body);
+        }
+
+    }
+
+    private static final class RebasedHttpRequest extends HttpRequestWrapper {
+
+        private final URI uri;
+
+        private RebasedHttpRequest(HttpRequest request, URI uri) {
+            super(request);
+            this.uri = uri;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+import org.flcit.springboot.http.client.core.loadbalancer.RetryExecutor;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebClient counterpart of {@link LoadBalancerClientHttpRequestInterceptor}: same {@link LoadBalancerClient}
+ * (so the same circuit breakers and statistics as the blocking clients of the backend), same retry rules and budget.
+ * Nothing blocks: the attempts are chained on the response of the previous one, only a retry backoff switches to the timer.
+ * A retry chooses an url the call has not tried yet, when there is one. A cancelled attempt releases its url; a method that is not idempotent is retried only when it was not sent.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class LoadBalancerExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private final LoadBalancerClient loadBalancerClient;
+    private final RetryExecutor retryExecutor;
+    private final String url;
+
+    /**
+     * @param loadBalancerClient
+     * @param url configured url of the client (rebased on the chosen url), may be null
+     */
+    public LoadBalancerExchangeFilterFunction(LoadBalancerClient loadBalancerClient, String url) {
+        this.loadBalancerClient = loadBalancerClient;
+        this.retryExecutor = new RetryExecutor(loadBalancerClient);
+        this.url = url;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!loadBalancerClient.isActive()) {
+            return next.exchange(request);
+        }
+        return Mono.defer(() -> attempt(request, next, retryExecutor.start()));
+    }
+
+    private Mono<ClientResponse> attempt(final ClientRequest request, final ExchangeFunction next, final RetryExecutor.Attempts attempts) {
+        return Mono.defer(() -> {
+            final Endpoint endpoint = retryExecutor.getEndpoint(null, attempts);
+            if (endpoint == null) {
+                return next.exchange(request);
+            }
+            final long start = System.nanoTime();
+            final AtomicBoolean settled = new AtomicBoolean();
+            return next.exchange(ClientRequest.from(request).url(UriRebase.rebase(request.url(), url, endpoint.getUrl())).build())
+                    .doOnCancel(() -> {
+                        if (settled.compareAndSet(false, true)) {
+                            loadBalancerClient.release(endpoint, System.nanoTime() - start);
+                        }
+                    })
+                    .map(Outcome::new)
+                    .onErrorResume(e -> Mono.just(new Outcome(e)))
+                    .flatMap(outcome -> {
+                        if (!settled.compareAndSet(false, true)) {
+                            // CANCELLED, THE URL IS ALREADY RELEASED
+                            return outcome.response != null ? outcome.response.releaseBody().then(Mono.<ClientResponse>empty()) : Mono.<ClientResponse>empty();
+                        }
+                        return handle(request, next, attempts, endpoint, System.nanoTime() - start, outcome);
+                    });
+        });
+    }
+
+    private Mono<ClientResponse> handle(final ClientRequest request, final ExchangeFunction next, final RetryExecutor.Attempts attempts,
+            final Endpoint endpoint, final long duration, final Outcome outcome) {
+        final boolean idempotent = RetryExecutor.isIdempotent(request.method().name());
+        if (outcome.error != null) {
+            final boolean resend = idempotent || RetryExecutor.isNotSent(outcome.error);
+            return retryExecutor.report(attempts, endpoint, duration, toRestClientException(outcome.error), resend) == RetryExecutor.Decision.RETRY
+                    ? retry(request, next, attempts)
+                    : Mono.error(outcome.error);
+        }
+        final ClientResponse response = outcome.response;
+        return retryExecutor.report(attempts, endpoint, duration, toStatusException(response), idempotent) == RetryExecutor.Decision.RETRY
+                ? response.releaseBody().then(retry(request, next, attempts))
+                : Mono.just(response);
+    }
+
+    private Mono<ClientResponse> retry(final ClientRequest request, final ExchangeFunction next, final RetryExecutor.Attempts attempts) {
+        final long backoff = attempts.getBackoff();
+        final Mono<ClientResponse> res = attempt(request, next, attempts);
+        return backoff > 0 ? Mono.delay(Duration.ofMillis(backoff)).then(res) : res;
+    }
+
+    /**
+     * @return status to fail over or to retry as a {@link StatusException}, otherwise null (success)
+     */
+    private StatusException toStatusException(final ClientResponse response) {
+        final int status = response.rawStatusCode();
+        final HttpHeaders headers = response.headers().asHttpHeaders();
+        return loadBalancerClient.isFail(status, headers) || loadBalancerClient.isRetry(status, headers)
+                ? new StatusException(status, "", headers)
+                : null;
+    }
+
+    /**
+     * @return I/O error of the cause chain as a {@link ResourceAccessException}, otherwise the error wrapped (classified through its cause chain)
+     */
+    private static RestClientException toRestClientException(final Throwable error) {
+        if (error instanceof RestClientException) {
+            return (RestClientException) error;
+        }
+        Throwable cause = error;
+        while (cause != null && !(cause instanceof IOException)) {
+            cause = cause.getCause();
+        }
+        return cause != null ? new ResourceAccessException(cause.getMessage(), (IOException) cause) : new RestClientException(String.valueOf(error.getMessage()), error);
+    }
+
+    private static final class Outcome {
+
+        private final ClientResponse response;
+        private final Throwable error;
+
+        private Outcome(ClientResponse response) {
+            this.response = response;
+            this.error = null;
+        }
+
+        private Outcome(Throwable error) {
+            this.response = null;
+            this.error = error;
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.WebServiceMessageFactory;
+import org.springframework.ws.transport.FaultAwareWebServiceConnection;
+import org.springframework.ws.transport.WebServiceConnection;
+import org.springframework.ws.transport.http.HttpComponentsConnection;
+import org.springframework.ws.transport.http.HttpUrlConnection;
+
+/**
+ * Connection opened on send: the attempts are executed by the {@link org.flcit.springboot.http.client.core.loadbalancer.RetryExecutor}
+ * of the sender, the connection of the last attempt receives the response. A SOAP call is a POST: only the attempts
+ * that were not sent are retried, an error status is reported with its headers (ex: Retry-After) then handled by the template.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class LoadBalancerWebServiceConnection implements FaultAwareWebServiceConnection {
+
+    private final LoadBalancerWebServiceMessageSender sender;
+    private final URI uri;
+    private WebServiceConnection connection;
+
+    LoadBalancerWebServiceConnection(LoadBalancerWebServiceMessageSender sender, URI uri) {
+        this.sender = sender;
+        this.uri = uri;
+    }
+
+    @Override
+    public void send(WebServiceMessage message) throws IOException {
+        final BufferedWebServiceMessage buffered = new BufferedWebServiceMessage(message);
+        try {
+            sender.getRetryExecutor().execute(null, null, false, chosen -> attempt(buffered, chosen));
+        } catch (StatusException e) {
+            // THE CONNECTION OF THE LAST ATTEMPT HANDLES THE ERROR OR THE FAULT
+        } catch (ResourceAccessException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private WebServiceConnection attempt(final BufferedWebServiceMessage message, final String chosen) {
+        final URI target = sender.rebase(uri, chosen);
+        try {
+            close();
+            connection = sender.getDelegate().createConnection(target);
+            connection.send(message);
+            final int status = getStatus(connection);
+            if (status != -1) {
+                final HttpHeaders headers = getHeaders(connection);
+                if (sender.getLoadBalancerClient().isFail(status, headers) || sender.getLoadBalancerClient().isRetry(status, headers)) {
+                    throw new StatusException(status, connection.getErrorMessage(), headers);
+                }
+            }
+            return connection;
+        } catch (IOException e) {
+            throw new ResourceAccessException("I/O error on POST request for \"" + target + "\": " + e.getMessage(), e);
+        }
+    }
+
+    private static int getStatus(final WebServiceConnection connection) throws IOException {
+        if (connection instanceof HttpComponentsConnection) {
+            final HttpResponse response = ((HttpComponentsConnection) connection).getHttpResponse();
+            return response != null ? response.getStatusLine().getStatusCode() : -1;
+        }
+        if (connection instanceof HttpUrlConnection) {
+            return ((HttpUrlConnection) connection).getConnection().getResponseCode();
+        }
+        return -1;
+    }
+
+    private static HttpHeaders getHeaders(final WebServiceConnection connection) {
+        final HttpHeaders res = new HttpHeaders();
+        if (connection instanceof HttpComponentsConnection) {
+            final HttpResponse response = ((HttpComponentsConnection) connection).getHttpResponse();
+            for (Header header : response != null ? response.getAllHeaders() : new Header[0]) {
+                res.add(header.getName(), header.getValue());
+            }
+        } else if (connection instanceof HttpUrlConnection) {
+            for (Map.Entry<String, List<String>> header : ((HttpUrlConnection) connection).getConnection().getHeaderFields().entrySet()) {
+                if (header.getKey() != null) {
+                    // THE NULL KEY IS THE STATUS LINE
+                    res.addAll(header.getKey(), header.getValue());
+                }
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public WebServiceMessage receive(WebServiceMessageFactory messageFactory) throws IOException {
+        return connection.receive(messageFactory);
+    }
+
+    @Override
+    public URI getUri() throws URISyntaxException {
+        return connection != null ? connection.getUri() : uri;
+    }
+
+    @Override
+    public boolean hasError() throws IOException {
+        return connection.hasError();
+    }
+
+    @Override
+    public String getErrorMessage() throws IOException {
+        return connection.getErrorMessage();
+    }
+
+    @Override
+    public boolean hasFault() throws IOException {
+        return connection instanceof FaultAwareWebServiceConnection && ((FaultAwareWebServiceConnection) connection).hasFault();
+    }
+
+    @Override
+    @Deprecated
+    @SuppressWarnings("deprecation")
+    public void setFault(boolean fault) throws IOException {
+        if (connection instanceof FaultAwareWebServiceConnection) {
+            ((FaultAwareWebServiceConnection) connection).setFault(fault);
+        }
+    }
+
+    @Override
+    public void setFaultCode(QName faultCode) throws IOException {
+        if (connection instanceof FaultAwareWebServiceConnection) {
+            ((FaultAwareWebServiceConnection) connection).setFaultCode(faultCode);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+}
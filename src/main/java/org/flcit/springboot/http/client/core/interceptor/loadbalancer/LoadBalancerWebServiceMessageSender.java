@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.springframework.ws.transport.WebServiceConnection;
+import org.springframework.ws.transport.WebServiceMessageSender;
+
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+import org.flcit.springboot.http.client.core.loadbalancer.RetryExecutor;
+
+/**
+ * Sends each message to the url chosen by the {@link LoadBalancerClient} through the delegate sender:
+ * transport errors and fail / retry status (SOAP faults included, through their HTTP status) are reported
+ * and the message, serialized once, is sent again to another url according to the fail over configuration.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class LoadBalancerWebServiceMessageSender implements WebServiceMessageSender {
+
+    private final WebServiceMessageSender delegate;
+    private final LoadBalancerClient loadBalancerClient;
+    private final RetryExecutor retryExecutor;
+    private final String url;
+
+    /**
+     * @param delegate
+     * @param loadBalancerClient
+     * @param url configured url of the client (rebased on the chosen url), may be null
+     */
+    public LoadBalancerWebServiceMessageSender(WebServiceMessageSender delegate, LoadBalancerClient loadBalancerClient, String url) {
+        this.delegate = delegate;
+        this.loadBalancerClient = loadBalancerClient;
+        this.retryExecutor = new RetryExecutor(loadBalancerClient);
+        this.url = url;
+    }
+
+    @Override
+    public WebServiceConnection createConnection(URI uri) throws IOException {
+        return loadBalancerClient.isActive() ? new LoadBalancerWebServiceConnection(this, uri) : delegate.createConnection(uri);
+    }
+
+    @Override
+    public boolean supports(URI uri) {
+        return delegate.supports(uri);
+    }
+
+    WebServiceMessageSender getDelegate() {
+        return delegate;
+    }
+
+    LoadBalancerClient getLoadBalancerClient() {
+        return loadBalancerClient;
+    }
+
+    RetryExecutor getRetryExecutor() {
+        return retryExecutor;
+    }
+
+    URI rebase(URI uri, String chosen) {
+        return chosen != null ? UriRebase.rebase(uri, url, chosen) : uri;
+    }
+
+}
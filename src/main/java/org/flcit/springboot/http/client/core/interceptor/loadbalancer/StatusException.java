@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Response status to report as fail or retry: the response itself is kept by the caller for the last attempt.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class StatusException extends RestClientResponseException {
+
+    private static final long serialVersionUID = 1L;
+
+    StatusException(int status, String statusText, HttpHeaders headers) {
+        super(status + " " + statusText, status, statusText, headers, null, null);
+    }
+
+}
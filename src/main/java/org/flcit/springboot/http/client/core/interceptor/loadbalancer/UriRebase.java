@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import java.net.URI;
+
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class UriRebase {
+
+    private UriRebase() { }
+
+    /**
+     * @param uri called uri
+     * @param url configured url of the client, may be null
+     * @param chosen url chosen by the load balancer
+     * @return the uri starting with url rebased on chosen, otherwise the uri with the scheme, host and port of chosen
+     */
+    static URI rebase(final URI uri, final String url, final String chosen) {
+        final String value = uri.toString();
+        if (url != null && value.startsWith(url)) {
+            return URI.create(chosen + value.substring(url.length()));
+        }
+        final URI target = URI.create(chosen);
+        return UriComponentsBuilder.fromUri(uri)
+                .scheme(target.getScheme())
+                .host(target.getHost())
+                .port(target.getPort())
+                .build(true)
+                .toUri();
+    }
+
+}
@@ -16,47 +16,226 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer;
 
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.DynamicLoadBalancerProvider;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.FailOverLoadBalancer;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.FailOverLoadBalancerProvider;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
 
 /**
+ * Slow start applies to every algorithm: a warming endpoint is kept with a probability equal to its weight factor
+ * (a hash of the key for keyed calls, so a key kept once stays kept while the factor grows), otherwise it is chosen again.
+ * With a bulkhead, a url at its maximum of in-flight calls is rejected and another url is chosen at once
+ * (over the other zones once every url of the local zone is full).
  * 
  * @since 
  * @author Florian Lestic
  */
 abstract class AbstractLoadBalancer implements LoadBalancer {
 
+    static final int SLOW_START_ATTEMPTS = 3;
+
     final LoadBalancerProvider loadBalancerProvider;
+    private ZoneAwareness zoneAwareness;
+    private Bulkhead bulkhead;
 
     AbstractLoadBalancer(LoadBalancerProvider loadBalancerProvider) {
         this.loadBalancerProvider = loadBalancerProvider;
     }
 
-    abstract String chooseUrl(String[] urls);
+    void setZone(String zone) {
+        this.zoneAwareness = zone != null ? new ZoneAwareness(zone) : null;
+    }
+
+    void setBulkhead(int maxInFlight) {
+        this.bulkhead = maxInFlight > 0 ? new Bulkhead(maxInFlight) : null;
+    }
+
+    /**
+     * Hot reconfiguration: takes over the state of the urls kept from the previous load balancer, before publication.
+     * 
+     * @param previous
+     */
+    void carryOver(AbstractLoadBalancer previous) {
+        if (loadBalancerProvider instanceof FailOverLoadBalancerProvider
+                && previous.loadBalancerProvider instanceof FailOverLoadBalancerProvider) {
+            ((FailOverLoadBalancerProvider) loadBalancerProvider).carryOver((FailOverLoadBalancerProvider) previous.loadBalancerProvider);
+        } else if (loadBalancerProvider instanceof DynamicLoadBalancerProvider
+                && previous.loadBalancerProvider instanceof DynamicLoadBalancerProvider) {
+            ((DynamicLoadBalancerProvider) loadBalancerProvider).carryOver((DynamicLoadBalancerProvider) previous.loadBalancerProvider);
+        }
+        if (bulkhead != null && previous.bulkhead != null) {
+            bulkhead.carryOver(previous.bulkhead, loadBalancerProvider);
+        }
+    }
+
+    /**
+     * Stops the discovery of a replaced load balancer.
+     */
+    void close() {
+        if (loadBalancerProvider instanceof DynamicLoadBalancerProvider) {
+            try {
+                ((DynamicLoadBalancerProvider) loadBalancerProvider).close();
+            } catch (IOException e) {
+                // NOTHING TO DO
+            }
+        }
+    }
+
+    abstract Endpoint choose(Endpoint[] endpoints);
 
     @SuppressWarnings("java:S1172")
-    String chooseUrl(String[] urls, String clientIp) {
-        return chooseUrl(urls);
+    Endpoint choose(Endpoint[] endpoints, String clientIp) {
+        return choose(endpoints);
     }
 
     @Override
     public String getUrl() {
-        final String url = chooseUrl(this.loadBalancerProvider.getUrls());
-        takeUrl(url);
-        return url;
+        return getUrl(getEndpoint());
     }
 
     @Override
     public String getUrl(String clientIp) {
-        final String url = chooseUrl(this.loadBalancerProvider.getUrls(), clientIp);
-        takeUrl(url);
-        return url;
+        return getUrl(getEndpoint(clientIp));
     }
 
-    private void takeUrl(final String url) {
-        if (loadBalancerProvider instanceof FailOverLoadBalancer) {
-            ((FailOverLoadBalancer) loadBalancerProvider).take(url);
+    @Override
+    public Endpoint getEndpoint() {
+        return getEndpoint(null);
+    }
+
+    @Override
+    public Endpoint getEndpoint(String clientIp) {
+        return getEndpoint(clientIp, null);
+    }
+
+    @Override
+    public Endpoint getEndpoint(String clientIp, Collection<Endpoint> excluded) {
+        final Endpoint[] all = this.loadBalancerProvider.getEndpoints();
+        final Endpoint[] endpoints = zoneAwareness != null ? zoneAwareness.select(all, this.loadBalancerProvider, clientIp) : all;
+        if (endpoints.length == 0) {
+            return null;
+        }
+        Endpoint endpoint = choose(endpoints, clientIp);
+        if (excluded != null && !excluded.isEmpty() && isExcluded(endpoint, excluded)) {
+            endpoint = exclude(endpoints, clientIp, endpoint, excluded);
+        }
+        final FailOverLoadBalancer failOver = loadBalancerProvider instanceof FailOverLoadBalancer ? (FailOverLoadBalancer) loadBalancerProvider : null;
+        if (failOver != null) {
+            final double factor = failOver.getSlowStartFactor(endpoint);
+            if (factor < 1) {
+                endpoint = slowStart(endpoints, clientIp, endpoint, factor, failOver);
+            }
         }
+        if (bulkhead != null && !bulkhead.tryAcquire(endpoint)) {
+            endpoint = bulkhead(endpoints, clientIp, endpoint, all);
+        }
+        if (failOver != null) {
+            failOver.take(endpoint);
+        }
+        return endpoint;
+    }
+
+    private Endpoint bulkhead(final Endpoint[] endpoints, final String clientIp, Endpoint endpoint, final Endpoint[] all) {
+        final Endpoint[] rejected = new Endpoint[endpoints.length];
+        int size = 0;
+        do {
+            rejected[size++] = endpoint;
+            endpoint = size < endpoints.length ? choose(endpoints, clientIp != null ? clientIp + '!' + size : null) : null;
+        } while (endpoint != null && !bulkhead.tryAcquire(endpoint));
+        for (int i = 0; i < size; i++) {
+            releaseChoice(rejected[i], -1);
+        }
+        if (endpoint == null) {
+            // THE CHOICES MAY REPEAT THEMSELVES (KEYS, RANDOM): LAST CHANCE ON EVERY URL, THEN OVER THE OTHER ZONES
+            for (Endpoint value : endpoints != all ? all : endpoints) {
+                if (bulkhead.tryAcquire(value)) {
+                    takeChoice(value);
+                    return value;
+                }
+            }
+            throw new BulkheadFullException(bulkhead.getMaxInFlight());
+        }
+        return endpoint;
+    }
+
+    private Endpoint exclude(final Endpoint[] endpoints, final String clientIp, Endpoint endpoint, final Collection<Endpoint> excluded) {
+        final Endpoint[] rejected = new Endpoint[endpoints.length];
+        int size = 0;
+        do {
+            rejected[size++] = endpoint;
+            endpoint = size < endpoints.length ? choose(endpoints, clientIp != null ? clientIp + '~' + size : null) : null;
+        } while (endpoint != null && isExcluded(endpoint, excluded));
+        int released = 0;
+        if (endpoint == null) {
+            // THE CHOICES MAY REPEAT THEMSELVES (KEYS, HASHES): FIRST URL NOT TRIED, OTHERWISE THE FIRST CHOICE AGAIN
+            for (Endpoint value : endpoints) {
+                if (!isExcluded(value, excluded)) {
+                    takeChoice(value);
+                    endpoint = value;
+                    break;
+                }
+            }
+            if (endpoint == null) {
+                endpoint = rejected[0];
+                released = 1;
+            }
+        }
+        for (int i = released; i < size; i++) {
+            releaseChoice(rejected[i], -1);
+        }
+        return endpoint;
+    }
+
+    private static boolean isExcluded(final Endpoint endpoint, final Collection<Endpoint> excluded) {
+        for (Endpoint value : excluded) {
+            if (value == endpoint || value.getUrl() != null && value.getUrl().equals(endpoint.getUrl())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Endpoint slowStart(final Endpoint[] endpoints, final String clientIp, Endpoint endpoint, double factor, final FailOverLoadBalancer failOver) {
+        final Endpoint[] rejected = new Endpoint[SLOW_START_ATTEMPTS];
+        int size = 0;
+        while (factor < 1 && size < SLOW_START_ATTEMPTS && draw(clientIp, size) >= factor) {
+            // THE REJECTED ENDPOINT KEEPS ITS IN FLIGHT CALL UNTIL THE END SO STATISTICS ALGORITHMS MOVE ON
+            rejected[size++] = endpoint;
+            endpoint = choose(endpoints, clientIp != null ? clientIp + '#' + size : null);
+            factor = failOver.getSlowStartFactor(endpoint);
+        }
+        for (int i = 0; i < size; i++) {
+            releaseChoice(rejected[i], -1);
+        }
+        return endpoint;
+    }
+
+    static double draw(final String key, final int attempt) {
+        if (key == null) {
+            return ThreadLocalRandom.current().nextDouble();
+        }
+        final int hash = (key.hashCode() + attempt) * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & 0xFFFFFF) / (double) (1 << 24);
+    }
+
+    private static String getUrl(final Endpoint endpoint) {
+        return endpoint != null ? endpoint.getUrl() : null;
+    }
+
+    @Override
+    public Endpoint resolve(String callUrl) {
+        return loadBalancerProvider.getEndpoint(callUrl);
+    }
+
+    @Override
+    public Endpoint resolve(URI callUrl) {
+        return loadBalancerProvider.getEndpoint(callUrl);
     }
 
     @Override
@@ -65,17 +244,81 @@ abstract class AbstractLoadBalancer implements LoadBalancer {
     }
 
     @Override
-    public String fail(String callUrl, long timeout) {
+    public final void release(String callUrl) {
+        release(resolve(callUrl), -1);
+    }
+
+    @Override
+    public final void release(String callUrl, long duration) {
+        release(resolve(callUrl), duration);
+    }
+
+    @Override
+    public final void release(Endpoint endpoint, long duration) {
+        if (bulkhead != null) {
+            bulkhead.release(endpoint, loadBalancerProvider);
+        }
+        releaseChoice(endpoint, duration);
+    }
+
+    @SuppressWarnings("java:S1172")
+    void takeChoice(Endpoint endpoint) {
+        // NOTHING TO TAKE BY DEFAULT
+    }
+
+    @SuppressWarnings("java:S1172")
+    void releaseChoice(Endpoint endpoint, long duration) {
+        // NOTHING TO RELEASE BY DEFAULT
+    }
+
+    @Override
+    public final String fail(String callUrl, long timeout) {
+        return getUrl(fail(resolve(callUrl), timeout));
+    }
+
+    @Override
+    public Endpoint fail(Endpoint endpoint, long timeout) {
+        release(endpoint, -1);
         if (loadBalancerProvider instanceof FailOverLoadBalancer) {
-            return ((FailOverLoadBalancer) loadBalancerProvider).fail(callUrl, timeout);
+            return ((FailOverLoadBalancer) loadBalancerProvider).fail(endpoint, timeout);
         }
         throw new IllegalStateException();
     }
 
     @Override
-    public void ok(String callUrl) {
+    public Endpoint eject(Endpoint endpoint, long timeout) {
+        release(endpoint, -1);
+        if (loadBalancerProvider instanceof FailOverLoadBalancer) {
+            return ((FailOverLoadBalancer) loadBalancerProvider).eject(endpoint, timeout);
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public void throttle(Endpoint endpoint, long duration) {
+        release(endpoint, -1);
+        if (loadBalancerProvider instanceof FailOverLoadBalancer) {
+            ((FailOverLoadBalancer) loadBalancerProvider).throttle(endpoint, duration);
+        } else {
+            throw new IllegalStateException();
+        }
+    }
+
+    @Override
+    public final void ok(String callUrl) {
+        ok(resolve(callUrl), -1);
+    }
+
+    @Override
+    public final void ok(String callUrl, long duration) {
+        ok(resolve(callUrl), duration);
+    }
+
+    @Override
+    public void ok(Endpoint endpoint, long duration) {
+        release(endpoint, duration);
         if (loadBalancerProvider instanceof FailOverLoadBalancer) {
-            ((FailOverLoadBalancer) loadBalancerProvider).ok(callUrl);
+            ((FailOverLoadBalancer) loadBalancerProvider).ok(endpoint, duration);
         } else {
             throw new IllegalStateException();
         }
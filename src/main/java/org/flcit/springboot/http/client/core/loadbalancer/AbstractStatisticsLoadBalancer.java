@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
+
+/**
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+abstract class AbstractStatisticsLoadBalancer extends AbstractLoadBalancer {
+
+    private final Map<Endpoint, EndpointStatistics> statistics = new ConcurrentHashMap<>();
+
+    AbstractStatisticsLoadBalancer(LoadBalancerProvider loadBalancerProvider) {
+        super(loadBalancerProvider);
+    }
+
+    final EndpointStatistics getStatistics(Endpoint endpoint) {
+        final EndpointStatistics value = statistics.get(endpoint);
+        return value != null ? value : statistics.computeIfAbsent(endpoint, k -> new EndpointStatistics());
+    }
+
+    @Override
+    void carryOver(AbstractLoadBalancer previous) {
+        super.carryOver(previous);
+        if (previous instanceof AbstractStatisticsLoadBalancer) {
+            for (Map.Entry<Endpoint, EndpointStatistics> entry : ((AbstractStatisticsLoadBalancer) previous).statistics.entrySet()) {
+                final Endpoint endpoint = loadBalancerProvider.getEndpoint(entry.getKey());
+                if (endpoint != null) {
+                    statistics.putIfAbsent(endpoint, entry.getValue());
+                }
+            }
+        }
+    }
+
+    @Override
+    void takeChoice(Endpoint endpoint) {
+        getStatistics(endpoint).take();
+    }
+
+    @Override
+    void releaseChoice(Endpoint endpoint, long duration) {
+        EndpointStatistics value = endpoint != null ? statistics.get(endpoint) : null;
+        if (value == null && endpoint != null) {
+            final Endpoint current = loadBalancerProvider.getEndpoint(endpoint);
+            value = current != null ? statistics.get(current) : null;
+        }
+        if (value != null) {
+            value.release(duration, System.nanoTime());
+        }
+    }
+
+}
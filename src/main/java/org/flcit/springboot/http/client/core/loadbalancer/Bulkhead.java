@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
+
+/**
+ * Maximum in-flight calls per url, so an unresponsive url cannot hold every connection of the client.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class Bulkhead {
+
+    private final Map<Endpoint, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final int maxInFlight;
+
+    Bulkhead(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    boolean tryAcquire(Endpoint endpoint) {
+        final AtomicInteger counter = get(endpoint);
+        int current;
+        do {
+            current = counter.get();
+            if (current >= maxInFlight) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    void release(Endpoint endpoint, LoadBalancerProvider loadBalancerProvider) {
+        AtomicInteger counter = endpoint != null ? inFlight.get(endpoint) : null;
+        if (counter == null && endpoint != null) {
+            final Endpoint current = loadBalancerProvider.getEndpoint(endpoint);
+            counter = current != null ? inFlight.get(current) : null;
+        }
+        if (counter != null) {
+            counter.updateAndGet(Bulkhead::decrement);
+        }
+    }
+
+    int getInFlight(Endpoint endpoint) {
+        final AtomicInteger counter = inFlight.get(endpoint);
+        return counter != null ? counter.get() : 0;
+    }
+
+    void carryOver(Bulkhead previous, LoadBalancerProvider loadBalancerProvider) {
+        for (Map.Entry<Endpoint, AtomicInteger> entry : previous.inFlight.entrySet()) {
+            final Endpoint endpoint = loadBalancerProvider.getEndpoint(entry.getKey());
+            if (endpoint != null) {
+                inFlight.putIfAbsent(endpoint, entry.getValue());
+            }
+        }
+    }
+
+    private AtomicInteger get(Endpoint endpoint) {
+        final AtomicInteger value = inFlight.get(endpoint);
+        return value != null ? value : inFlight.computeIfAbsent(endpoint, k -> new AtomicInteger());
+    }
+
+    private static int decrement(int value) {
+        return value > 0 ? value - 1 : 0;
+    }
+
+}
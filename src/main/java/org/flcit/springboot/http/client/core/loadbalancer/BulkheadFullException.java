@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Every url of the load balancer has reached its maximum of in-flight calls.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class BulkheadFullException extends RestClientException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param maxInFlight
+     */
+    public BulkheadFullException(int maxInFlight) {
+        super(String.format("Every url has reached its maximum of %d in-flight calls", maxInFlight));
+    }
+
+}
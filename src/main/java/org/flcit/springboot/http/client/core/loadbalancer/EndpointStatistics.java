@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load of one url: in-flight calls and peak EWMA of the call durations.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class EndpointStatistics {
+
+    static final long DECAY_TIME = TimeUnit.SECONDS.toNanos(10);
+    private static final double PENALTY = Double.MAX_VALUE / 2;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double cost;
+    private volatile long stamp = System.nanoTime();
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    void take() {
+        inFlight.incrementAndGet();
+    }
+
+    void release(long duration, long now) {
+        inFlight.updateAndGet(EndpointStatistics::decrement);
+        if (duration >= 0) {
+            observe(duration, now);
+        }
+    }
+
+    private synchronized void observe(double duration, long now) {
+        final double weight = decay(now);
+        this.cost = duration > cost ? duration : cost * weight + duration * (1 - weight);
+        this.stamp = now;
+    }
+
+    /**
+     * @param now
+     * @return peak EWMA cost decayed since the last sample, so a stale slow url gets traffic again
+     */
+    double getCost(long now) {
+        return cost * decay(now);
+    }
+
+    /**
+     * @param now
+     * @return cost weighted by the in-flight calls
+     */
+    double getScore(long now) {
+        final double current = getCost(now);
+        final int pending = inFlight.get();
+        if (current == 0) {
+            return pending == 0 ? 0 : PENALTY + pending;
+        }
+        return current * (pending + 1);
+    }
+
+    private double decay(long now) {
+        final long elapsed = now - stamp;
+        return elapsed <= 0 ? 1 : Math.exp(-(double) elapsed / DECAY_TIME);
+    }
+
+    private static int decrement(int value) {
+        return value > 0 ? value - 1 : 0;
+    }
+
+}
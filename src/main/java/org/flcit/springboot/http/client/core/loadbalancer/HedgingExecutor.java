@@ -0,0 +1,386 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.HedgingConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+
+/**
+ * Hedged calls for idempotent requests: when the first call has not answered after the configured delay
+ * (or the p95 of the recent calls), the same call is sent to another endpoint chosen by the load balancer,
+ * the first success wins and the other one is cancelled through the hooks registered by the call
+ * (ex: {@code onCancel.accept(request::abort)}). Hedges are bounded by maxRate of the calls.
+ * The first call runs on the calling thread (MDC, security and request contexts kept), only the hedge runs on the executor.
+ * A call without cancellation hook ({@link #execute(String, Function)}) cannot be aborted: once hedged, both attempts run
+ * on the executor and the caller returns with the first success, the late attempt is released when it ends.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class HedgingExecutor {
+
+    private static final int SAMPLES = 256;
+    private static final int REFRESH = 32;
+    private static final double PERCENTILE = 0.95;
+
+    private final LoadBalancerClient loadBalancerClient;
+    private final HedgingConfiguration hedging;
+    private final Executor executor;
+    private final TokenBucket budget;
+    private final AtomicLongArray durations = new AtomicLongArray(SAMPLES);
+    private final AtomicLong count = new AtomicLong();
+    private volatile long percentile = -1;
+
+    /**
+     * @param loadBalancerClient configured client (the hedging configuration is read here)
+     */
+    public HedgingExecutor(LoadBalancerClient loadBalancerClient) {
+        this(loadBalancerClient, Shared.EXECUTOR);
+    }
+
+    /**
+     * @param loadBalancerClient configured client (the hedging configuration is read here)
+     * @param executor runs the hedges (a rejected hedge is skipped)
+     */
+    public HedgingExecutor(LoadBalancerClient loadBalancerClient, Executor executor) {
+        this.loadBalancerClient = loadBalancerClient;
+        this.hedging = loadBalancerClient.getHedging();
+        this.executor = executor;
+        this.budget = this.hedging != null ? new TokenBucket(this.hedging.getMaxRate(), 10) : null;
+    }
+
+    /**
+     * @param <T>
+     * @param defaultUrl
+     * @param call called with the chosen url
+     * @return
+     */
+    public <T> T execute(String defaultUrl, Function<String, T> call) {
+        return execute(defaultUrl, (url, onCancel) -> call.apply(url), false);
+    }
+
+    /**
+     * @param <T>
+     * @param defaultUrl
+     * @param call called with the chosen url and a consumer of cancellation hooks
+     * @return
+     */
+    public <T> T execute(String defaultUrl, Call<T> call) {
+        return execute(defaultUrl, call, true);
+    }
+
+    private <T> T execute(String defaultUrl, Call<T> call, boolean abortable) {
+        final Endpoint first = loadBalancerClient.getEndpoint();
+        final boolean active = budget != null && hedging.isActive() && first != null;
+        if (active) {
+            budget.deposit();
+        }
+        final long delay = active ? getDelay() : -1;
+        final AtomicReference<Attempt<T>> winner = new AtomicReference<>();
+        final Attempt<T> primary = new Attempt<>(first, first != null ? first.getUrl() : defaultUrl, call, winner, null,
+                delay >= 0 && !abortable ? new LinkedBlockingQueue<>() : null);
+        if (delay < 0) {
+            primary.run();
+            return primary.get();
+        }
+        final AtomicReference<Attempt<T>> hedges = new AtomicReference<>();
+        final ScheduledFuture<?> timer = Shared.SCHEDULER.schedule(() -> hedge(primary, call, winner, hedges), delay, TimeUnit.NANOSECONDS);
+        if (primary.completions != null) {
+            return race(primary, hedges, timer);
+        }
+        primary.run();
+        timer.cancel(false);
+        final Attempt<T> hedge = hedges.getAndSet(primary);
+        if (hedge == null) {
+            return primary.get();
+        }
+        if (winner.get() == hedge) {
+            return hedge.get();
+        }
+        if (primary.error == null) {
+            hedge.cancel();
+            return primary.get();
+        }
+        try {
+            hedge.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            hedge.cancel();
+            throw new ResourceAccessException("Hedged call interrupted", new InterruptedIOException());
+        }
+        return hedge.error == null ? hedge.get() : primary.get();
+    }
+
+    /**
+     * The primary runs on the executor (on the calling thread when rejected), the caller waits for the first success of the two attempts.
+     */
+    private <T> T race(Attempt<T> primary, AtomicReference<Attempt<T>> hedges, ScheduledFuture<?> timer) {
+        try {
+            executor.execute(primary);
+        } catch (RejectedExecutionException e) {
+            primary.run();
+        }
+        try {
+            Attempt<T> done = primary.completions.take();
+            if (done == primary) {
+                timer.cancel(false);
+                final Attempt<T> hedge = hedges.getAndSet(primary);
+                if (primary.error == null || hedge == null) {
+                    if (hedge != null) {
+                        hedge.cancel();
+                    }
+                    return primary.get();
+                }
+                done = primary.completions.take();
+                return done.error == null ? done.get() : primary.get();
+            }
+            if (done.error == null) {
+                return done.get();
+            }
+            // THE HEDGE FAILED: THE PRIMARY DECIDES
+            primary.completions.take();
+            return primary.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timer.cancel(false);
+            primary.cancel();
+            final Attempt<T> hedge = hedges.getAndSet(primary);
+            if (hedge != null) {
+                hedge.cancel();
+            }
+            throw new ResourceAccessException("Hedged call interrupted", new InterruptedIOException());
+        }
+    }
+
+    private <T> void hedge(Attempt<T> primary, Call<T> call, AtomicReference<Attempt<T>> winner, AtomicReference<Attempt<T>> hedges) {
+        if (hedges.get() != null) {
+            return;
+        }
+        final Endpoint second = primary.endpoint != null
+                ? loadBalancerClient.getEndpoint(null, Collections.singletonList(primary.endpoint)) : loadBalancerClient.getEndpoint();
+        if (second == null) {
+            return;
+        }
+        // A SINGLE AVAILABLE URL: NOTHING TO HEDGE ON
+        if (second == primary.endpoint || !budget.tryWithdraw()) {
+            loadBalancerClient.release(second);
+            return;
+        }
+        final Attempt<T> hedge = new Attempt<>(second, second.getUrl(), call, winner, primary, primary.completions);
+        // THE PRIMARY ENDED MEANWHILE
+        if (!hedges.compareAndSet(null, hedge)) {
+            loadBalancerClient.release(second);
+            return;
+        }
+        try {
+            executor.execute(hedge);
+        } catch (RejectedExecutionException e) {
+            hedge.skip(e);
+        }
+    }
+
+    /**
+     * @return nanoseconds, -1 while the adaptive delay is unknown (no hedge)
+     */
+    private long getDelay() {
+        if (hedging.getDelay() > 0) {
+            return TimeUnit.MILLISECONDS.toNanos(hedging.getDelay());
+        }
+        final long value = this.percentile;
+        return value < 0 ? -1 : Math.max(TimeUnit.MILLISECONDS.toNanos(hedging.getMinDelay()), value);
+    }
+
+    private void record(long duration) {
+        final long index = count.getAndIncrement();
+        durations.set((int) (index % SAMPLES), duration);
+        if ((index + 1) % REFRESH == 0) {
+            final int size = (int) Math.min(index + 1, SAMPLES);
+            final long[] values = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = durations.get(i);
+            }
+            Arrays.sort(values);
+            this.percentile = values[(int) Math.ceil(PERCENTILE * size) - 1];
+        }
+    }
+
+    /**
+     * @param <T>
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+
+        /**
+         * @param url
+         * @param onCancel registers a hook aborting the call when it loses
+         * @return
+         */
+        T call(String url, Consumer<Runnable> onCancel);
+
+    }
+
+    private final class Attempt<T> implements Runnable {
+
+        private final Endpoint endpoint;
+        private final String url;
+        private final Call<T> call;
+        private final AtomicReference<Attempt<T>> winner;
+        private final Attempt<T> primary;
+        private final BlockingQueue<Attempt<T>> completions;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final List<Runnable> cancellations = new CopyOnWriteArrayList<>();
+        private volatile boolean cancelled;
+        private T result;
+        private RuntimeException error;
+
+        private Attempt(Endpoint endpoint, String url, Call<T> call, AtomicReference<Attempt<T>> winner, Attempt<T> primary,
+                BlockingQueue<Attempt<T>> completions) {
+            this.endpoint = endpoint;
+            this.url = url;
+            this.call = call;
+            this.winner = winner;
+            this.primary = primary;
+            this.completions = completions;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            try {
+                result = call.call(url, this::onCancel);
+                final long duration = System.nanoTime() - start;
+                if (endpoint != null && cancelled) {
+                    loadBalancerClient.release(endpoint, duration);
+                } else if (endpoint != null) {
+                    loadBalancerClient.ok(endpoint, duration);
+                    record(duration);
+                }
+                if (!cancelled && winner.compareAndSet(null, this) && primary != null) {
+                    primary.cancel();
+                }
+            } catch (RuntimeException e) {
+                error = e;
+                report(e, System.nanoTime() - start);
+            } finally {
+                finish();
+            }
+        }
+
+        private void skip(RuntimeException e) {
+            error = e;
+            loadBalancerClient.release(endpoint);
+            finish();
+        }
+
+        private void finish() {
+            done.countDown();
+            if (completions != null) {
+                completions.add(this);
+            }
+        }
+
+        private void report(RuntimeException e, long duration) {
+            if (endpoint == null) {
+                return;
+            }
+            if (!cancelled && e instanceof RestClientException && loadBalancerClient.isFail((RestClientException) e)) {
+                try {
+                    loadBalancerClient.fail(endpoint, (RestClientException) e);
+                } catch (RestClientException rethrown) {
+                    // NO FAIL OVER: ALREADY RELEASED
+                }
+            } else {
+                loadBalancerClient.release(endpoint, duration);
+            }
+        }
+
+        private void onCancel(Runnable hook) {
+            cancellations.add(hook);
+            if (cancelled) {
+                hook.run();
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            for (Runnable hook : cancellations) {
+                hook.run();
+            }
+        }
+
+        private T get() {
+            if (error != null) {
+                throw error;
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Lazily created on the first hedged call: one timer thread, hedges on a bounded pool without queue
+     * (a hedge that cannot start at once is skipped).
+     */
+    private static final class Shared {
+
+        private static final int MAX_THREADS = 64;
+        private static final ScheduledThreadPoolExecutor SCHEDULER = scheduler();
+        private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(0, MAX_THREADS, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), daemon("load-balancer-hedging-"));
+
+        private Shared() { }
+
+        private static ScheduledThreadPoolExecutor scheduler() {
+            final ScheduledThreadPoolExecutor res = new ScheduledThreadPoolExecutor(1, daemon("load-balancer-hedging-timer-"));
+            res.setRemoveOnCancelPolicy(true);
+            return res;
+        }
+
+        private static CustomizableThreadFactory daemon(String prefix) {
+            final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+            threadFactory.setDaemon(true);
+            return threadFactory;
+        }
+
+    }
+
+}
@@ -16,30 +16,86 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer;
 
+import java.util.Arrays;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
 
 /**
+ * Consistent hashing on the client ip (or any request key): a ring of virtual nodes is built once per url set (and zone subset),
+ * so ejecting one of N urls only remaps about 1/N of the keys. Lookup is a binary search.
  * 
  * @since 
  * @author Florian Lestic
  */
 class IpHashLoadBalancer extends AbstractLoadBalancer {
 
+    static final int VIRTUAL_NODES = 160;
+    private static final String DEFAULT_KEY = "127.0.0.1";
+
+    private final SubsetCache<Ring> rings = new SubsetCache<>((endpoints, previous) -> new Ring(endpoints));
+
     IpHashLoadBalancer(LoadBalancerProvider loadBalancerProvider) {
         super(loadBalancerProvider);
     }
 
     @Override
-    String chooseUrl(String[] urls, String clientIp) {
-        if (clientIp == null) {
-            clientIp = "127.0.0.1";
-        }
-        return urls[Math.abs(clientIp.hashCode() % urls.length)];
+    Endpoint choose(Endpoint[] endpoints, String clientIp) {
+        return rings.get(endpoints).get(clientIp != null ? clientIp : DEFAULT_KEY);
     }
 
     @Override
-    String chooseUrl(String[] urls) {
-        return chooseUrl(urls, null);
+    Endpoint choose(Endpoint[] endpoints) {
+        return choose(endpoints, null);
+    }
+
+    static final class Ring {
+
+        private final int[] points;
+        private final Endpoint[] owners;
+
+        Ring(Endpoint[] endpoints) {
+            final long[] entries = new long[endpoints.length * VIRTUAL_NODES];
+            int index = 0;
+            for (int i = 0; i < endpoints.length; i++) {
+                final int hash = hash(endpoints[i].getUrl());
+                for (int n = 0; n < VIRTUAL_NODES; n++) {
+                    entries[index++] = ((long) mix(hash + n * 0x9E3779B9) << 32) | i;
+                }
+            }
+            Arrays.sort(entries);
+            this.points = new int[entries.length];
+            this.owners = new Endpoint[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                this.points[i] = (int) (entries[i] >> 32);
+                this.owners[i] = endpoints[(int) entries[i]];
+            }
+        }
+
+        Endpoint get(String key) {
+            int index = Arrays.binarySearch(points, hash(key));
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return owners[index == owners.length ? 0 : index];
+        }
+
+    }
+
+    static int hash(String value) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x01000193;
+        }
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
     }
 
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
+
+/**
+ * Least outstanding requests: in-flight calls are counted per url (taken at choice, released by
+ * {@link #release(Endpoint, long)}, {@link #ok(Endpoint, long)} or {@link #fail(Endpoint, long)}), ties are broken randomly.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+class LeastRequestsLoadBalancer extends AbstractStatisticsLoadBalancer {
+
+    LeastRequestsLoadBalancer(LoadBalancerProvider loadBalancerProvider) {
+        super(loadBalancerProvider);
+    }
+
+    @Override
+    Endpoint choose(Endpoint[] endpoints) {
+        EndpointStatistics best = null;
+        Endpoint bestEndpoint = null;
+        int bestValue = Integer.MAX_VALUE;
+        int ties = 0;
+        for (Endpoint endpoint : endpoints) {
+            final EndpointStatistics statistics = getStatistics(endpoint);
+            final int value = statistics.getInFlight();
+            if (value < bestValue) {
+                best = statistics;
+                bestEndpoint = endpoint;
+                bestValue = value;
+                ties = 1;
+            } else if (value == bestValue
+                    && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                best = statistics;
+                bestEndpoint = endpoint;
+            }
+        }
+        if (best != null) {
+            best.take();
+        }
+        return bestEndpoint;
+    }
+
+}
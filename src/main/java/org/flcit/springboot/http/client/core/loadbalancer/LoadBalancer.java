@@ -16,8 +16,16 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer;
 
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
 import org.flcit.springboot.http.client.core.loadbalancer.domain.LoadBalancerAlgorithm;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.BaseLoadBalancerProvider;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.DynamicLoadBalancerProvider;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.FailOverLoadBalancerProvider;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
 
@@ -33,20 +41,118 @@ public interface LoadBalancer {
      */
     public String getUrl();
     /**
-     * @param clientIp
+     * @param clientIp client ip or any request key (used by ipHash)
      * @return
      */
     public String getUrl(String clientIp);
+    /**
+     * @return handle to pass back to {@link #fail(Endpoint, long)}, {@link #ok(Endpoint, long)} or {@link #release(Endpoint, long)}
+     */
+    public default Endpoint getEndpoint() {
+        return resolve(getUrl());
+    }
+    /**
+     * @param clientIp client ip or any request key (used by ipHash)
+     * @return
+     */
+    public default Endpoint getEndpoint(String clientIp) {
+        return resolve(getUrl(clientIp));
+    }
+    /**
+     * @param clientIp client ip or any request key (used by ipHash), may be null
+     * @param excluded endpoints already tried by the call, chosen again only when no other url is available
+     * @return
+     */
+    public default Endpoint getEndpoint(String clientIp, Collection<Endpoint> excluded) {
+        final Endpoint res = getEndpoint(clientIp);
+        if (res == null || excluded == null || excluded.stream().noneMatch(value -> Objects.equals(value.getUrl(), res.getUrl()))) {
+            return res;
+        }
+        release(res, -1);
+        return getEndpoint(clientIp);
+    }
+    /**
+     * @param callUrl
+     * @return the configured endpoint matching the called url, by default an endpoint of the called url itself
+     */
+    public default Endpoint resolve(String callUrl) {
+        return callUrl != null ? Endpoint.of(callUrl) : null;
+    }
+    /**
+     * @param callUrl
+     * @return the configured endpoint matching the called url
+     */
+    public default Endpoint resolve(URI callUrl) {
+        return resolve(callUrl != null ? callUrl.toString() : null);
+    }
     /**
      * @param callUrl
      * @param timeout
      * @return
      */
     public String fail(String callUrl, long timeout);
+    /**
+     * @param endpoint
+     * @param timeout
+     * @return
+     */
+    public default Endpoint fail(Endpoint endpoint, long timeout) {
+        return resolve(fail(endpoint.getUrl(), timeout));
+    }
+    /**
+     * Ejects the endpoint at once for the given duration (ex: 503 with Retry-After).
+     * @param endpoint
+     * @param timeout milliseconds
+     * @return
+     */
+    public default Endpoint eject(Endpoint endpoint, long timeout) {
+        return fail(endpoint, timeout);
+    }
+    /**
+     * Completion of a call answered 429: the endpoint keeps a reduced share of the calls for the given duration.
+     * @param endpoint
+     * @param duration milliseconds
+     */
+    public default void throttle(Endpoint endpoint, long duration) {
+        fail(endpoint, duration);
+    }
     /**
      * @param callUrl
      */
     public void ok(String callUrl);
+    /**
+     * @param callUrl
+     * @param duration call duration in nanoseconds
+     */
+    public default void ok(String callUrl, long duration) {
+        ok(callUrl);
+    }
+    /**
+     * @param endpoint
+     * @param duration call duration in nanoseconds
+     */
+    public default void ok(Endpoint endpoint, long duration) {
+        ok(endpoint.getUrl(), duration);
+    }
+    /**
+     * Completion of a call obtained by {@link #getUrl()} (implied by {@link #ok(String)} and {@link #fail(String, long)}).
+     * Nothing to do for a load balancer without in-flight statistics.
+     * @param callUrl
+     */
+    public default void release(String callUrl) {
+    }
+    /**
+     * @param callUrl
+     * @param duration call duration in nanoseconds
+     */
+    public default void release(String callUrl, long duration) {
+    }
+    /**
+     * @param endpoint
+     * @param duration call duration in nanoseconds
+     */
+    public default void release(Endpoint endpoint, long duration) {
+    }
     /**
      * @return
      */
@@ -62,6 +168,17 @@ public interface LoadBalancer {
                 : new FailOverLoadBalancerProvider(urls);
     }
 
+    /**
+     * @param urls
+     * @param weights
+     * @param failOver
+     * @return
+     */
+    static LoadBalancerProvider getWeightedLoadBalancerProvider(String[] urls, double[] weights, boolean failOver) {
+        return urls == null || urls.length < 2 || !failOver ? new BaseLoadBalancerProvider(urls, weights, null)
+                : new FailOverLoadBalancerProvider(urls, weights, (FailOverConfiguration) null);
+    }
+
     /**
      * @param urls
      * @param weights
@@ -69,8 +186,19 @@ public interface LoadBalancer {
      * @return
      */
     static LoadBalancerProvider getLoadBalancerProvider(String[] urls, int[] weights, boolean failOver) {
-        return urls == null || urls.length < 2 || !failOver ? new BaseLoadBalancerProvider(urls, weights)
-                : new FailOverLoadBalancerProvider(urls, weights);
+        return getWeightedLoadBalancerProvider(urls, weights != null ? Arrays.stream(weights).asDoubleStream().toArray() : null, failOver);
+    }
+
+    /**
+     * @param urls
+     * @param weights
+     * @param zones zone of each url
+     * @param failOver configuration of the circuit breakers, null or inactive for no fail over
+     * @return
+     */
+    static LoadBalancerProvider getLoadBalancerProvider(String[] urls, double[] weights, String[] zones, FailOverConfiguration failOver) {
+        return urls == null || urls.length < 2 || failOver == null || !failOver.isActive() ? new BaseLoadBalancerProvider(urls, weights, zones)
+                : new FailOverLoadBalancerProvider(urls, weights, zones, failOver);
     }
 
     /**
@@ -87,7 +215,19 @@ public interface LoadBalancer {
      * @return
      */
     public static LoadBalancer getLoadBalancer(String[] urls) {
-        return getLoadBalancer(null, urls, null, false);
+        return getLoadBalancer(null, getLoadBalancerProvider(urls, false));
+    }
+
+    /**
+     * @param algorithm
+     * @param urls
+     * @param weights
+     * @param failOver
+     * @return
+     */
+    public static LoadBalancer getWeightedLoadBalancer(LoadBalancerAlgorithm algorithm, String[] urls, double[] weights, boolean failOver) {
+        return getLoadBalancer(algorithm, algorithm != null && algorithm.isWeighted() ? getWeightedLoadBalancerProvider(urls, weights, failOver)
+                : getLoadBalancerProvider(urls, failOver));
     }
 
     /**
@@ -98,26 +238,66 @@ public interface LoadBalancer {
      * @return
      */
     public static LoadBalancer getLoadBalancer(LoadBalancerAlgorithm algorithm, String[] urls, int[] weights, boolean failOver) {
-        if (urls == null || urls.length < 2) {
-            return new NoLoadBalancer(getLoadBalancerProvider(urls, failOver));
-        }
-        if (algorithm == null) {
-            return new RoundRobinLoadBalancer(getLoadBalancerProvider(urls, failOver));
+        return getWeightedLoadBalancer(algorithm, urls, weights != null ? Arrays.stream(weights).asDoubleStream().toArray() : null, failOver);
+    }
+
+    /**
+     * @param algorithm
+     * @param urls
+     * @param weights
+     * @param failOver configuration of the circuit breakers, null or inactive for no fail over
+     * @return
+     */
+    public static LoadBalancer getLoadBalancer(LoadBalancerAlgorithm algorithm, String[] urls, double[] weights, FailOverConfiguration failOver) {
+        return getLoadBalancer(algorithm, getLoadBalancerProvider(urls, algorithm != null && algorithm.isWeighted() ? weights : null, null, failOver));
+    }
+
+    /**
+     * @param algorithm
+     * @param loadBalancerProvider
+     * @return
+     */
+    public static LoadBalancer getLoadBalancer(LoadBalancerAlgorithm algorithm, LoadBalancerProvider loadBalancerProvider) {
+        return getLoadBalancer(algorithm, loadBalancerProvider, null);
+    }
+
+    /**
+     * @param algorithm
+     * @param loadBalancerProvider
+     * @param zone caller zone, null to ignore the zones of the endpoints
+     * @return
+     */
+    public static LoadBalancer getLoadBalancer(LoadBalancerAlgorithm algorithm, LoadBalancerProvider loadBalancerProvider, String zone) {
+        if (!(loadBalancerProvider instanceof DynamicLoadBalancerProvider) && loadBalancerProvider.getEndpoints().length < 2) {
+            return new NoLoadBalancer(loadBalancerProvider);
         }
-        switch (algorithm) {
-        case roundRobin:
-            return new RoundRobinLoadBalancer(getLoadBalancerProvider(urls, failOver));
+        final AbstractLoadBalancer res;
+        switch (algorithm != null ? algorithm : LoadBalancerAlgorithm.roundRobin) {
         case random:
-            return new RandomLoadBalancer(getLoadBalancerProvider(urls, failOver));
+            res = new RandomLoadBalancer(loadBalancerProvider);
+            break;
         case ipHash:
-            return new IpHashLoadBalancer(getLoadBalancerProvider(urls, failOver));
+            res = new IpHashLoadBalancer(loadBalancerProvider);
+            break;
         case weightRandom:
-            return new WeightRandomLoadBalancer(getLoadBalancerProvider(urls, weights, failOver));
+            res = new WeightRandomLoadBalancer(loadBalancerProvider);
+            break;
         case weightRoundRobin:
-            return new WeightRoundRobinLoadBalancer(getLoadBalancerProvider(urls, weights, failOver));
+            res = new WeightRoundRobinLoadBalancer(loadBalancerProvider);
+            break;
+        case leastRequests:
+            res = new LeastRequestsLoadBalancer(loadBalancerProvider);
+            break;
+        case p2cEwma:
+            res = new PeakEwmaLoadBalancer(loadBalancerProvider);
+            break;
+        case roundRobin:
         default:
-            return new RoundRobinLoadBalancer(getLoadBalancerProvider(urls, failOver));
+            res = new RoundRobinLoadBalancer(loadBalancerProvider);
+            break;
         }
+        res.setZone(zone);
+        return res;
     }
 
 }
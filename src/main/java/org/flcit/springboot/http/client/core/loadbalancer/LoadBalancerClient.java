@@ -17,14 +17,24 @@
 package org.flcit.springboot.http.client.core.loadbalancer;
 
 import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.client.RestClientException;
 
 import org.flcit.commons.core.util.ObjectUtils;
 import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.HedgingConfiguration;
 import org.flcit.springboot.http.client.core.loadbalancer.domain.LoadBalancerAlgorithm;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.DnsLoadBalancerProvider;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.FileLoadBalancerProvider;
 
 /**
+ * The load balancer is published through a volatile field: {@link #refresh()} builds a new one
+ * from the current properties and swaps it, the calls in progress end on the new one through their url or endpoint handle.
  * 
  * @since 
  * @author Florian Lestic
@@ -32,11 +42,21 @@ import org.flcit.springboot.http.client.core.loadbalancer.domain.LoadBalancerAlg
 public class LoadBalancerClient {
 
     private String[] urls;
-    private int[] weights;
+    private String file;
+    private long fileDebounce = 1000;
+    private boolean dns;
+    private long dnsTtl = 30000;
+    private double[] weights;
+    private String[] zones;
+    private String zone;
+    private int maxInFlight;
     private boolean active;
     private FailOverConfiguration failOver;
     private LoadBalancerAlgorithm algorithm;
-    private LoadBalancer instance;
+    private HedgingConfiguration hedging;
+    private volatile LoadBalancer instance;
+    private volatile DnsLoadBalancerProvider dnsProvider;
+    private volatile TokenBucket retryBudget;
 
     /**
      * @param urls
@@ -45,13 +65,96 @@ public class LoadBalancerClient {
         this.urls = urls;
     }
 
+    /**
+     * @param file JSON or YAML file of the endpoints (replaces urls, weights and zones)
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * @param fileDebounce milliseconds
+     */
+    public void setFileDebounce(long fileDebounce) {
+        this.fileDebounce = fileDebounce;
+    }
+
+    /**
+     * @param dns expands each url into one url per resolved address
+     */
+    public void setDns(boolean dns) {
+        this.dns = dns;
+    }
+
+    /**
+     * @param dnsTtl milliseconds between two resolutions
+     */
+    public void setDnsTtl(long dnsTtl) {
+        this.dnsTtl = dnsTtl;
+    }
+
+    /**
+     * @return true when the urls are expanded into one url per resolved address
+     */
+    public boolean isDns() {
+        return active && dns && file == null;
+    }
+
+    /**
+     * @param scheme
+     * @param address ip (between brackets for IPv6)
+     * @param port
+     * @return the host name the address was resolved from by the current load balancer, null otherwise
+     */
+    public String getHostName(String scheme, String address, int port) {
+        final DnsLoadBalancerProvider provider = isDns() ? this.dnsProvider : null;
+        return provider != null ? provider.getHostName(scheme, address, port) : null;
+    }
+
     /**
      * @param weights
      */
-    public void setWeights(int[] weights) {
+    public void setWeights(double[] weights) {
         this.weights = weights;
     }
 
+    /**
+     * @param weights
+     * @deprecated use {@link #setWeights(double[])}
+     */
+    @Deprecated
+    public void setWeights(int[] weights) {
+        this.weights = weights != null ? Arrays.stream(weights).asDoubleStream().toArray() : null;
+    }
+
+    /**
+     * @return
+     */
+    public double[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * @param zones zone of each url
+     */
+    public void setZones(String[] zones) {
+        this.zones = zones;
+    }
+
+    /**
+     * @param zone caller zone: activates the zone aware load balancing
+     */
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * @param maxInFlight maximum of in-flight calls per url (0 for no limit)
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
     /**
      * @param active
      */
@@ -59,6 +162,13 @@ public class LoadBalancerClient {
         this.active = active;
     }
 
+    /**
+     * @return
+     */
+    public boolean isActive() {
+        return active;
+    }
+
     private boolean isFailOver() {
         return active && failOver != null && failOver.isActive();
     }
@@ -67,7 +177,11 @@ public class LoadBalancerClient {
      * @return
      */
     public boolean hasFailOver() {
-        return active && failOver != null && failOver.isActive() && instance != null && instance.hasFailOver();
+        return hasFailOver(instance);
+    }
+
+    private boolean hasFailOver(LoadBalancer loadBalancer) {
+        return active && failOver != null && failOver.isActive() && loadBalancer != null && loadBalancer.hasFailOver();
     }
 
     /**
@@ -77,6 +191,36 @@ public class LoadBalancerClient {
     public boolean isFail(RestClientException e) {
         return failOver != null && failOver.isFail(e);
     }
+    /**
+     * @param status
+     * @return
+     */
+    public boolean isFail(int status) {
+        return isFail(status, null);
+    }
+    /**
+     * @param status
+     * @param headers response headers, may be null
+     * @return
+     */
+    public boolean isFail(int status, HttpHeaders headers) {
+        return failOver != null && failOver.isFail(status, headers);
+    }
+    /**
+     * @param status
+     * @return
+     */
+    public boolean isRetry(int status) {
+        return isRetry(status, null);
+    }
+    /**
+     * @param status
+     * @param headers response headers, may be null
+     * @return
+     */
+    public boolean isRetry(int status, HttpHeaders headers) {
+        return failOver != null && failOver.isRetry(status, headers);
+    }
     /**
      * @param e
      * @return
@@ -96,6 +240,22 @@ public class LoadBalancerClient {
      */
     public void setFailOver(FailOverConfiguration failOver) {
         this.failOver = failOver;
+        this.retryBudget = null;
+    }
+
+    /**
+     * @return retry budget shared by every executor of the client, null without fail over configuration
+     */
+    TokenBucket getRetryBudget() {
+        final TokenBucket res = this.retryBudget;
+        return res != null || failOver == null ? res : createRetryBudget();
+    }
+
+    private synchronized TokenBucket createRetryBudget() {
+        if (this.retryBudget == null && failOver != null) {
+            this.retryBudget = new TokenBucket(failOver.getRetryBudget(), failOver.getRetryBudgetMin());
+        }
+        return this.retryBudget;
     }
 
     /**
@@ -105,31 +265,158 @@ public class LoadBalancerClient {
         this.algorithm = algorithm;
     }
 
+    /**
+     * @return
+     */
+    public HedgingConfiguration getHedging() {
+        return this.hedging;
+    }
+
+    /**
+     * @param hedging
+     */
+    public void setHedging(HedgingConfiguration hedging) {
+        this.hedging = hedging;
+    }
+
     /**
      * 
      */
-    public void init() {
-        if (!active || urls == null || urls.length < 1) {
-            this.instance = null;
-        } else {
-            this.instance = LoadBalancer.getLoadBalancer(algorithm, urls, weights, isFailOver());
+    public synchronized void init() {
+        this.instance = isConfigured() ? create() : null;
+    }
+
+    /**
+     * Hot reconfiguration (ex: after a configuration refresh): builds a new load balancer from the current properties
+     * and swaps it atomically, carrying over the circuit breakers, ejections, slow starts and statistics of the urls kept.
+     */
+    public synchronized void refresh() {
+        final LoadBalancer previous = this.instance;
+        final LoadBalancer next = isConfigured() ? create() : null;
+        if (previous instanceof AbstractLoadBalancer && next instanceof AbstractLoadBalancer) {
+            ((AbstractLoadBalancer) next).carryOver((AbstractLoadBalancer) previous);
+        }
+        this.instance = next;
+        this.retryBudget = null;
+        if (previous instanceof AbstractLoadBalancer) {
+            ((AbstractLoadBalancer) previous).close();
         }
     }
 
+    private boolean isConfigured() {
+        return active && (file != null || (urls != null && urls.length > 0));
+    }
+
     /**
      * @param url
      * @param e
      * @return
      */
     public String fail(URI url, RestClientException e) {
-        return fail(url.toString(), e);
+        final Endpoint endpoint = fail(resolve(url), e);
+        return endpoint != null ? endpoint.getUrl() : null;
     }
 
     /**
      * @param url
      */
     public void ok(URI url) {
-        ok(url.toString());
+        ok(resolve(url), -1);
+    }
+
+    /**
+     * @param url
+     * @param duration call duration in nanoseconds
+     */
+    public void ok(URI url, long duration) {
+        ok(resolve(url), duration);
+    }
+
+    /**
+     * @param url
+     */
+    public void release(URI url) {
+        release(resolve(url), -1);
+    }
+
+    /**
+     * @param url
+     * @param duration call duration in nanoseconds
+     */
+    public void release(URI url, long duration) {
+        release(resolve(url), duration);
+    }
+
+    private Endpoint resolve(URI url) {
+        final LoadBalancer loadBalancer = this.instance;
+        return active && loadBalancer != null ? loadBalancer.resolve(url) : null;
+    }
+
+    /**
+     * @param endpoint handle returned by {@link #getEndpoint()}
+     * @param e
+     * @return
+     */
+    public Endpoint fail(Endpoint endpoint, RestClientException e) {
+        final LoadBalancer loadBalancer = this.instance;
+        if (!hasFailOver(loadBalancer)) {
+            release(endpoint, -1);
+            throw e;
+        }
+        return fail(loadBalancer, endpoint, e);
+    }
+
+    /**
+     * A 429 throttles the url (Retry-After or throttleDuration), a 503 with Retry-After ejects it for the duration asked by the server.
+     */
+    private Endpoint fail(final LoadBalancer loadBalancer, final Endpoint endpoint, final RestClientException e) {
+        if (FailOverConfiguration.isTooManyRequests(e)) {
+            loadBalancer.throttle(endpoint, failOver.getThrottleDuration(e));
+            return endpoint;
+        }
+        final long retryAfter = failOver.getRetryAfter(e);
+        if (retryAfter < 0) {
+            return loadBalancer.fail(endpoint, failOver.getTimeout());
+        }
+        return loadBalancer.eject(endpoint, retryAfter);
+    }
+
+    /**
+     * @param endpoint handle returned by {@link #getEndpoint()}
+     */
+    public void ok(Endpoint endpoint) {
+        ok(endpoint, -1);
+    }
+
+    /**
+     * @param endpoint handle returned by {@link #getEndpoint()}
+     * @param duration call duration in nanoseconds
+     */
+    public void ok(Endpoint endpoint, long duration) {
+        final LoadBalancer loadBalancer = this.instance;
+        if (hasFailOver(loadBalancer)) {
+            loadBalancer.ok(endpoint, duration);
+        } else {
+            release(endpoint, duration);
+        }
+    }
+
+    /**
+     * @param endpoint handle returned by {@link #getEndpoint()}
+     */
+    public void release(Endpoint endpoint) {
+        release(endpoint, -1);
+    }
+
+    /**
+     * @param endpoint handle returned by {@link #getEndpoint()}
+     * @param duration call duration in nanoseconds
+     */
+    public void release(Endpoint endpoint, long duration) {
+        final LoadBalancer loadBalancer = this.instance;
+        if (active && loadBalancer != null) {
+            loadBalancer.release(endpoint, duration);
+        }
     }
 
     /**
@@ -138,18 +425,53 @@ public class LoadBalancerClient {
      * @return
      */
     public String fail(String url, RestClientException e) {
-        if (!hasFailOver()) {
+        final LoadBalancer loadBalancer = this.instance;
+        if (!hasFailOver(loadBalancer)) {
+            release(url);
             throw e;
         }
-        return instance.fail(url, failOver.getTimeout());
+        if (FailOverConfiguration.isTooManyRequests(e) || failOver.getRetryAfter(e) >= 0) {
+            final Endpoint endpoint = fail(loadBalancer, loadBalancer.resolve(url), e);
+            return endpoint != null ? endpoint.getUrl() : null;
+        }
+        return loadBalancer.fail(url, failOver.getTimeout());
     }
 
     /**
      * @param url
      */
     public void ok(String url) {
-        if (hasFailOver()) {
-            instance.ok(url);
+        ok(url, -1);
+    }
+
+    /**
+     * @param url
+     * @param duration call duration in nanoseconds
+     */
+    public void ok(String url, long duration) {
+        final LoadBalancer loadBalancer = this.instance;
+        if (hasFailOver(loadBalancer)) {
+            loadBalancer.ok(url, duration);
+        } else {
+            release(url, duration);
+        }
+    }
+
+    /**
+     * @param url
+     */
+    public void release(String url) {
+        release(url, -1);
+    }
+
+    /**
+     * @param url
+     * @param duration call duration in nanoseconds
+     */
+    public void release(String url, long duration) {
+        final LoadBalancer loadBalancer = this.instance;
+        if (active && loadBalancer != null) {
+            loadBalancer.release(url, duration);
         }
     }
 
@@ -158,13 +480,79 @@ public class LoadBalancerClient {
      * @return
      */
     public String getUrl(String defaultUrl) {
+        final LoadBalancer loadBalancer = getInstance();
+        return loadBalancer != null ? ObjectUtils.getOrDefault(loadBalancer.getUrl(), defaultUrl) : defaultUrl;
+    }
+
+    /**
+     * @param defaultUrl
+     * @param key client ip or any request key (used by ipHash)
+     * @return
+     */
+    public String getUrl(String defaultUrl, String key) {
+        final LoadBalancer loadBalancer = getInstance();
+        return loadBalancer != null ? ObjectUtils.getOrDefault(loadBalancer.getUrl(key), defaultUrl) : defaultUrl;
+    }
+
+    /**
+     * @return endpoint handle, null when inactive (use the default url)
+     */
+    public Endpoint getEndpoint() {
+        final LoadBalancer loadBalancer = getInstance();
+        return loadBalancer != null ? loadBalancer.getEndpoint() : null;
+    }
+
+    /**
+     * @param key client ip or any request key (used by ipHash)
+     * @return endpoint handle, null when inactive (use the default url)
+     */
+    public Endpoint getEndpoint(String key) {
+        final LoadBalancer loadBalancer = getInstance();
+        return loadBalancer != null ? loadBalancer.getEndpoint(key) : null;
+    }
+
+    /**
+     * @param key client ip or any request key (used by ipHash), may be null
+     * @param excluded endpoints already tried by the call (retry), chosen again only when no other url is available
+     * @return endpoint handle, null when inactive (use the default url)
+     */
+    public Endpoint getEndpoint(String key, Collection<Endpoint> excluded) {
+        final LoadBalancer loadBalancer = getInstance();
+        return loadBalancer != null ? loadBalancer.getEndpoint(key, excluded) : null;
+    }
+
+    private LoadBalancer create() {
+        final LoadBalancer res;
+        if (file != null) {
+            this.dnsProvider = null;
+            res = LoadBalancer.getLoadBalancer(algorithm,
+                    new FileLoadBalancerProvider(Paths.get(file), fileDebounce, isFailOver() ? failOver : null), zone);
+        } else {
+            final double[] values = algorithm != null && algorithm.isWeighted() ? weights : null;
+            this.dnsProvider = dns ? new DnsLoadBalancerProvider(urls, values, zones, dnsTtl, isFailOver() ? failOver : null) : null;
+            res = LoadBalancer.getLoadBalancer(algorithm,
+                    dns ? this.dnsProvider : LoadBalancer.getLoadBalancerProvider(urls, values, zones, isFailOver() ? failOver : null),
+                    zones != null ? zone : null);
+        }
+        if (maxInFlight > 0 && res instanceof AbstractLoadBalancer && !(res instanceof NoLoadBalancer)) {
+            ((AbstractLoadBalancer) res).setBulkhead(maxInFlight);
+        }
+        return res;
+    }
+
+    private LoadBalancer getInstance() {
         if (!active) {
-            return defaultUrl;
+            return null;
         }
-        if (instance == null) {
-            instance = LoadBalancer.getLoadBalancer(algorithm, urls, weights, isFailOver());
+        final LoadBalancer loadBalancer = this.instance;
+        return loadBalancer != null ? loadBalancer : createInstance();
+    }
+
+    private synchronized LoadBalancer createInstance() {
+        if (this.instance == null) {
+            this.instance = create();
         }
-        return instance != null ? ObjectUtils.getOrDefault(instance.getUrl(), defaultUrl) : defaultUrl;
+        return this.instance;
     }
 
 }
@@ -16,6 +16,7 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer;
 
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
 
 /**
@@ -30,8 +31,8 @@ class NoLoadBalancer extends AbstractLoadBalancer {
     }
 
     @Override
-    String chooseUrl(String[] urls) {
-        return urls[0];
+    Endpoint choose(Endpoint[] endpoints) {
+        return endpoints[0];
     }
 
 }
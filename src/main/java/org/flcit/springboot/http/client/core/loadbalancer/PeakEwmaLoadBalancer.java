@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
+
+/**
+ * Power of two choices: two random urls are compared on peak EWMA duration x in-flight calls.
+ * Durations are reported by {@link #ok(Endpoint, long)} or {@link #release(Endpoint, long)}.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+class PeakEwmaLoadBalancer extends AbstractStatisticsLoadBalancer {
+
+    PeakEwmaLoadBalancer(LoadBalancerProvider loadBalancerProvider) {
+        super(loadBalancerProvider);
+    }
+
+    @Override
+    Endpoint choose(Endpoint[] endpoints) {
+        final int length = endpoints.length;
+        if (length == 1) {
+            getStatistics(endpoints[0]).take();
+            return endpoints[0];
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(length);
+        int second = random.nextInt(length - 1);
+        if (second >= first) {
+            second++;
+        }
+        final long now = System.nanoTime();
+        final EndpointStatistics firstStatistics = getStatistics(endpoints[first]);
+        final EndpointStatistics secondStatistics = getStatistics(endpoints[second]);
+        if (secondStatistics.getScore(now) < firstStatistics.getScore(now)) {
+            secondStatistics.take();
+            return endpoints[second];
+        }
+        firstStatistics.take();
+        return endpoints[first];
+    }
+
+}
@@ -18,6 +18,7 @@ package org.flcit.springboot.http.client.core.loadbalancer;
 
 import java.util.concurrent.ThreadLocalRandom;
 
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
 
 /**
@@ -32,8 +33,8 @@ class RandomLoadBalancer extends AbstractLoadBalancer {
     }
 
     @Override
-    String chooseUrl(String[] urls) {
-        return urls[ThreadLocalRandom.current().nextInt(urls.length)];
+    Endpoint choose(Endpoint[] endpoints) {
+        return endpoints[ThreadLocalRandom.current().nextInt(endpoints.length)];
     }
 
 }
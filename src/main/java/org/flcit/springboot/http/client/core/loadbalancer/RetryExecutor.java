@@ -0,0 +1,319 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.springframework.web.client.RestClientException;
+
+import org.flcit.springboot.http.client.core.interceptor.limit.ConcurrencyLimitExceededException;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+
+/**
+ * Executes a call through a {@link LoadBalancerClient} and applies its {@link FailOverConfiguration}:
+ * fail errors are reported and retried up to failMaxAttempt, retry status up to retryMaxAttempt (first included),
+ * with exponential backoff and decorrelated jitter. Retries are bounded by the token bucket of the client,
+ * shared by all its executors: each call deposits retryBudget tokens, each retry takes one, capacity is retryBudgetMin.
+ * A retry chooses an url the call has not tried yet, when there is one.
+ * A call that is not idempotent is reported the same way but retried only when it was not sent (connection, pool or limit error).
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class RetryExecutor {
+
+    private static final int MAX_CAUSES = 10;
+    private static final Class<?>[] NOT_SENT_EXCEPTIONS = {
+        ConnectException.class, ConnectTimeoutException.class, UnknownHostException.class, NoRouteToHostException.class,
+        ConcurrencyLimitExceededException.class, BulkheadFullException.class
+    };
+
+    private final LoadBalancerClient loadBalancerClient;
+
+    /**
+     * @param loadBalancerClient configured client (owner of the retry budget)
+     */
+    public RetryExecutor(LoadBalancerClient loadBalancerClient) {
+        this.loadBalancerClient = loadBalancerClient;
+    }
+
+    /**
+     * @param <T>
+     * @param defaultUrl
+     * @param call called with the chosen url
+     * @return
+     */
+    public <T> T execute(String defaultUrl, Function<String, T> call) {
+        return execute(defaultUrl, null, call);
+    }
+
+    /**
+     * @param <T>
+     * @param defaultUrl
+     * @param key client ip or any request key (used by ipHash)
+     * @param call called with the chosen url
+     * @return
+     */
+    public <T> T execute(String defaultUrl, String key, Function<String, T> call) {
+        return execute(defaultUrl, key, true, call);
+    }
+
+    /**
+     * @param <T>
+     * @param defaultUrl
+     * @param key client ip or any request key (used by ipHash), may be null
+     * @param idempotent false to retry only the attempts that were not sent
+     * @param call called with the chosen url
+     * @return
+     */
+    public <T> T execute(String defaultUrl, String key, boolean idempotent, Function<String, T> call) {
+        final Attempts attempts = start();
+        while (true) {
+            final Endpoint endpoint = getEndpoint(key, attempts);
+            final String url = endpoint != null ? endpoint.getUrl() : defaultUrl;
+            final long start = System.nanoTime();
+            try {
+                final T res = call.apply(url);
+                report(attempts, endpoint, System.nanoTime() - start, null, true);
+                return res;
+            } catch (RestClientException e) {
+                if (report(attempts, endpoint, System.nanoTime() - start, e, idempotent || isNotSent(e)) != Decision.RETRY) {
+                    throw e;
+                }
+                sleep(attempts.backoff, e);
+            } catch (RuntimeException | Error e) {
+                release(endpoint, System.nanoTime() - start);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Starts a call: credits the retry budget.
+     * @return attempts of the call, to pass to {@link #getEndpoint(String, Attempts)} and {@link #report(Attempts, Endpoint, long, RestClientException, boolean)}
+     */
+    public Attempts start() {
+        deposit();
+        return new Attempts();
+    }
+
+    /**
+     * @param key client ip or any request key (used by ipHash), may be null
+     * @param attempts
+     * @return endpoint of the next attempt (an url not tried yet when there is one), null when inactive (use the default url)
+     */
+    public Endpoint getEndpoint(String key, Attempts attempts) {
+        return loadBalancerClient.getEndpoint(key, attempts.tried);
+    }
+
+    /**
+     * Reports the outcome of an attempt to the load balancer (ok, fail or release) and decides what follows.
+     * A retry is counted, taken from the retry budget and its backoff computed ({@link Attempts#getBackoff()}).
+     * 
+     * @param attempts
+     * @param endpoint endpoint of the attempt, may be null
+     * @param duration nanoseconds
+     * @param error null for a success, otherwise the error or the error status (with its headers) of the attempt
+     * @param resend false when the attempt must not be sent again (not idempotent and sent)
+     * @return
+     */
+    public Decision report(Attempts attempts, Endpoint endpoint, long duration, RestClientException error, boolean resend) {
+        if (error == null) {
+            ok(endpoint, duration);
+            return Decision.OK;
+        }
+        final FailOverConfiguration failOver = loadBalancerClient.getFailOver();
+        final boolean retry;
+        if (loadBalancerClient.isFail(error)) {
+            if (!fail(endpoint, error)) {
+                return Decision.FAIL;
+            }
+            retry = ++attempts.failAttempt < failOver.getFailMaxAttempt();
+        } else {
+            release(endpoint, duration);
+            retry = loadBalancerClient.isRetry(error) && ++attempts.retryAttempt < failOver.getRetryMaxAttempt();
+        }
+        if (!retry || !resend || !tryRetry()) {
+            return Decision.FAIL;
+        }
+        if (endpoint != null) {
+            attempts.tried.add(endpoint);
+        }
+        attempts.backoff = getBackoff(attempts.backoff);
+        return Decision.RETRY;
+    }
+
+    /**
+     * @param method HTTP method
+     * @return true for the idempotent methods (GET, HEAD, OPTIONS, TRACE, PUT, DELETE)
+     */
+    public static boolean isIdempotent(String method) {
+        switch (method != null ? method : "") {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "TRACE":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param e
+     * @return true when the cause chain shows that the request was not sent (connection, pool or concurrency limit error)
+     */
+    public static boolean isNotSent(Throwable e) {
+        Throwable cause = e;
+        for (int i = 0; i < MAX_CAUSES && cause != null; i++) {
+            for (Class<?> value : NOT_SENT_EXCEPTIONS) {
+                if (value.isInstance(cause)) {
+                    return true;
+                }
+            }
+            cause = cause.getCause() != cause ? cause.getCause() : null;
+        }
+        return false;
+    }
+
+    /**
+     * Credits the retry budget for a new call (done by {@link #execute(String, String, Function)}).
+     */
+    public void deposit() {
+        final TokenBucket budget = loadBalancerClient.getRetryBudget();
+        if (budget != null) {
+            budget.deposit();
+        }
+    }
+
+    /**
+     * @return false when the retry budget is exhausted or there is no fail over
+     */
+    public boolean tryRetry() {
+        final TokenBucket budget = loadBalancerClient.getRetryBudget();
+        return budget != null && budget.tryWithdraw();
+    }
+
+    /**
+     * @param previous previous backoff, 0 for the first retry
+     * @return milliseconds to wait before the next retry
+     */
+    public long getBackoff(long previous) {
+        return getBackoff(loadBalancerClient.getFailOver(), previous);
+    }
+
+    private void ok(Endpoint endpoint, long duration) {
+        if (endpoint != null) {
+            loadBalancerClient.ok(endpoint, duration);
+        }
+    }
+
+    /**
+     * @return false without fail over (the endpoint is released)
+     */
+    private boolean fail(Endpoint endpoint, RestClientException e) {
+        if (endpoint == null) {
+            return loadBalancerClient.hasFailOver();
+        }
+        try {
+            loadBalancerClient.fail(endpoint, e);
+            return true;
+        } catch (RestClientException rethrown) {
+            return false;
+        }
+    }
+
+    private void release(Endpoint endpoint, long duration) {
+        if (endpoint != null) {
+            loadBalancerClient.release(endpoint, duration);
+        }
+    }
+
+    /**
+     * Decorrelated jitter: random between base and 3 x the previous backoff, capped.
+     */
+    private static long getBackoff(FailOverConfiguration failOver, long previous) {
+        final long base = Math.max(0, failOver.getRetryBackoff());
+        final long max = Math.max(base, failOver.getRetryMaxBackoff());
+        final long upper = Math.min(max, Math.max(base, previous) * 3);
+        return upper > base ? ThreadLocalRandom.current().nextLong(base, upper + 1) : base;
+    }
+
+    private static void sleep(long backoff, RestClientException e) {
+        if (backoff <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(backoff);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Decision of {@link RetryExecutor#report(Attempts, Endpoint, long, RestClientException, boolean)}.
+     */
+    public enum Decision {
+        /**
+         * Success.
+         */
+        OK,
+        /**
+         * Attempt again after {@link Attempts#getBackoff()}.
+         */
+        RETRY,
+        /**
+         * Give up with the outcome of the attempt.
+         */
+        FAIL
+    }
+
+    /**
+     * Attempts of a call: counters, tried endpoints and backoff. The attempts of a call are sequential.
+     */
+    public static final class Attempts {
+
+        private final List<Endpoint> tried = new ArrayList<>(2);
+        private int failAttempt;
+        private int retryAttempt;
+        private long backoff;
+
+        private Attempts() { }
+
+        /**
+         * @return milliseconds to wait before the retry
+         */
+        public long getBackoff() {
+            return backoff;
+        }
+
+    }
+
+}
@@ -16,6 +16,9 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
 
 /**
@@ -25,18 +28,19 @@ import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerP
  */
 class RoundRobinLoadBalancer extends AbstractLoadBalancer {
 
-    private int position = 0;
+    private final AtomicInteger position = new AtomicInteger();
 
     RoundRobinLoadBalancer(LoadBalancerProvider loadBalancerProvider) {
         super(loadBalancerProvider);
     }
 
+    /**
+     * Lock-free: the counter only grows and is reduced modulo the current array length,
+     * so it stays valid when the fail over provider shrinks or grows the endpoints between calls.
+     */
     @Override
-    synchronized String chooseUrl(String[] urls) {
-        if (position >= urls.length) {
-            position = 0;
-        }
-        return urls[position++];
+    Endpoint choose(Endpoint[] endpoints) {
+        return endpoints[(position.getAndIncrement() & Integer.MAX_VALUE) % endpoints.length];
     }
 
 }
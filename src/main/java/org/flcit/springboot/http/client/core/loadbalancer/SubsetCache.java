@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.util.Arrays;
+import java.util.function.BiFunction;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+
+/**
+ * State of an algorithm (ring, alias table, smooth weights) per endpoints array: zone aware load balancing
+ * alternates between the local and the remote endpoints, each subset keeps its own state instead of rebuilding it on every switch.
+ * Copy-on-write, at most {@link #SIZE} subsets, the most recent first.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class SubsetCache<S> {
+
+    private static final int SIZE = 4;
+
+    private final BiFunction<Endpoint[], S, S> factory;
+    private volatile Entry<S>[] entries = newEntries(0);
+
+    /**
+     * @param factory builds the state of an endpoints array from the most recent state (null for the first one)
+     */
+    SubsetCache(BiFunction<Endpoint[], S, S> factory) {
+        this.factory = factory;
+    }
+
+    S get(Endpoint[] endpoints) {
+        final Entry<S>[] current = this.entries;
+        for (Entry<S> entry : current) {
+            if (entry.endpoints == endpoints) {
+                return entry.state;
+            }
+        }
+        for (Entry<S> entry : current) {
+            if (Arrays.equals(entry.endpoints, endpoints)) {
+                return entry.state;
+            }
+        }
+        final S state = factory.apply(endpoints, current.length > 0 ? current[0].state : null);
+        final Entry<S>[] next = newEntries(Math.min(SIZE, current.length + 1));
+        next[0] = new Entry<>(endpoints, state);
+        System.arraycopy(current, 0, next, 1, next.length - 1);
+        this.entries = next;
+        return state;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> Entry<S>[] newEntries(int size) {
+        return new Entry[size];
+    }
+
+    private static final class Entry<S> {
+
+        private final Endpoint[] endpoints;
+        private final S state;
+
+        private Entry(Endpoint[] endpoints, S state) {
+            this.endpoints = endpoints;
+            this.state = state;
+        }
+
+    }
+
+}
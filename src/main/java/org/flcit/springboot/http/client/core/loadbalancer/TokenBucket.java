@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free budget of extra calls (retries, hedges): each call deposits {@code ratio} tokens,
+ * each extra call takes one, capacity is {@code capacity} tokens.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class TokenBucket {
+
+    private static final long TOKEN = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    TokenBucket(double ratio, int capacity) {
+        this.deposit = (long) (Math.max(0, ratio) * TOKEN);
+        this.capacity = Math.max(1, capacity) * TOKEN;
+        this.balance = new AtomicLong(this.capacity);
+    }
+
+    void deposit() {
+        if (deposit > 0) {
+            balance.accumulateAndGet(deposit, (current, value) -> Math.min(capacity, current + value));
+        }
+    }
+
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+}
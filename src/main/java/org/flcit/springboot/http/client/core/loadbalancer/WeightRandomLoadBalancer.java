@@ -16,17 +16,82 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer;
 
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
 
 /**
+ * Weighted random with an alias table (Vose): O(1) selection, rebuilt when the urls change.
  * 
  * @since 
  * @author Florian Lestic
  */
-class WeightRandomLoadBalancer extends RandomLoadBalancer {
+class WeightRandomLoadBalancer extends AbstractLoadBalancer {
+
+    private final SubsetCache<AliasTable> tables = new SubsetCache<>((endpoints, previous) -> new AliasTable(endpoints));
 
     WeightRandomLoadBalancer(LoadBalancerProvider loadBalancerProvider) {
         super(loadBalancerProvider);
     }
 
+    @Override
+    Endpoint choose(Endpoint[] endpoints) {
+        return tables.get(endpoints).next(ThreadLocalRandom.current());
+    }
+
+    static final class AliasTable {
+
+        private final Endpoint[] endpoints;
+        private final double[] probabilities;
+        private final int[] aliases;
+
+        AliasTable(Endpoint[] endpoints) {
+            final int n = endpoints.length;
+            this.endpoints = endpoints;
+            this.probabilities = new double[n];
+            this.aliases = new int[n];
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                probabilities[i] = endpoints[i].getWeight();
+                total += probabilities[i];
+            }
+            final int[] small = new int[n];
+            final int[] large = new int[n];
+            int smallSize = 0;
+            int largeSize = 0;
+            for (int i = 0; i < n; i++) {
+                probabilities[i] = probabilities[i] * n / total;
+                if (probabilities[i] < 1d) {
+                    small[smallSize++] = i;
+                } else {
+                    large[largeSize++] = i;
+                }
+            }
+            while (smallSize > 0 && largeSize > 0) {
+                final int less = small[--smallSize];
+                final int more = large[--largeSize];
+                aliases[less] = more;
+                probabilities[more] = probabilities[more] + probabilities[less] - 1d;
+                if (probabilities[more] < 1d) {
+                    small[smallSize++] = more;
+                } else {
+                    large[largeSize++] = more;
+                }
+            }
+            while (largeSize > 0) {
+                probabilities[large[--largeSize]] = 1d;
+            }
+            while (smallSize > 0) {
+                probabilities[small[--smallSize]] = 1d;
+            }
+        }
+
+        Endpoint next(ThreadLocalRandom random) {
+            final int index = random.nextInt(endpoints.length);
+            return random.nextDouble() < probabilities[index] ? endpoints[index] : endpoints[aliases[index]];
+        }
+
+    }
+
 }
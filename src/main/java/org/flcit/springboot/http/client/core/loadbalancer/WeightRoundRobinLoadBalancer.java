@@ -16,17 +16,90 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
 import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
 
 /**
+ * Smooth weighted round robin (nginx): one entry per url, picks are interleaved by weight.
+ * The smooth sequence of a subset is computed once (one period for integer weights, reduced by their gcd,
+ * {@link #MAX_PERIOD} picks otherwise) then read with a shared counter: lock-free like {@link RoundRobinLoadBalancer}.
  * 
  * @since 
  * @author Florian Lestic
  */
-class WeightRoundRobinLoadBalancer extends RoundRobinLoadBalancer {
+class WeightRoundRobinLoadBalancer extends AbstractLoadBalancer {
+
+    static final int MAX_PERIOD = 4096;
+
+    private final AtomicInteger position = new AtomicInteger();
+    private final SubsetCache<Endpoint[]> sequences = new SubsetCache<>((endpoints, previous) -> sequence(endpoints));
 
     WeightRoundRobinLoadBalancer(LoadBalancerProvider loadBalancerProvider) {
         super(loadBalancerProvider);
     }
 
+    @Override
+    Endpoint choose(Endpoint[] endpoints) {
+        final Endpoint[] sequence = sequences.get(endpoints);
+        return sequence[(position.getAndIncrement() & Integer.MAX_VALUE) % sequence.length];
+    }
+
+    static Endpoint[] sequence(Endpoint[] endpoints) {
+        final double[] weights = getWeights(endpoints);
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        final Endpoint[] res = new Endpoint[getPeriod(weights, total, endpoints.length)];
+        final double[] currentWeights = new double[weights.length];
+        for (int n = 0; n < res.length; n++) {
+            int best = 0;
+            for (int i = 0; i < weights.length; i++) {
+                currentWeights[i] += weights[i];
+                if (currentWeights[i] > currentWeights[best]) {
+                    best = i;
+                }
+            }
+            currentWeights[best] -= total;
+            res[n] = endpoints[best];
+        }
+        return res;
+    }
+
+    private static double[] getWeights(Endpoint[] endpoints) {
+        final double[] res = new double[endpoints.length];
+        boolean positive = false;
+        for (int i = 0; i < res.length; i++) {
+            res[i] = Math.max(0, endpoints[i].getWeight());
+            positive |= res[i] > 0;
+        }
+        if (!positive) {
+            // NO WEIGHT: PLAIN ROUND ROBIN
+            Arrays.fill(res, 1);
+        }
+        return res;
+    }
+
+    /**
+     * @return sum of the integer weights divided by their gcd when it does not exceed {@link #MAX_PERIOD}, otherwise MAX_PERIOD (at least one pick per url)
+     */
+    private static int getPeriod(double[] weights, double total, int size) {
+        long gcd = 0;
+        for (double weight : weights) {
+            if (weight != Math.rint(weight) || weight > Integer.MAX_VALUE) {
+                return Math.max(MAX_PERIOD, size);
+            }
+            gcd = gcd((long) weight, gcd);
+        }
+        final double period = total / gcd;
+        return period <= MAX_PERIOD ? (int) period : Math.max(MAX_PERIOD, size);
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
 }
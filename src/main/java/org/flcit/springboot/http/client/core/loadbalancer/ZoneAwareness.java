@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
+
+/**
+ * Local zone first: the share of calls kept in the caller zone is its available weight over its configured weight
+ * times an overprovisioning factor (1.4, at most 1), the rest spills over the other zones.
+ * The split is computed once per endpoints snapshot; a keyed call draws its zone from the key so the key keeps its zone.
+ * An overloaded local zone (every url at its bulkhead limit) spills over too, see {@link AbstractLoadBalancer}.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class ZoneAwareness {
+
+    static final double OVERPROVISIONING = 1.4;
+
+    private final String zone;
+    private volatile Split split;
+
+    ZoneAwareness(String zone) {
+        this.zone = zone;
+    }
+
+    Endpoint[] select(Endpoint[] endpoints, LoadBalancerProvider loadBalancerProvider, String key) {
+        Split current = this.split;
+        if (current == null || current.endpoints != endpoints) {
+            current = new Split(endpoints, loadBalancerProvider.getAllEndpoints(), zone);
+            this.split = current;
+        }
+        if (current.local.length == 0 || current.remote.length == 0) {
+            return endpoints;
+        }
+        return current.localRatio >= 1 || AbstractLoadBalancer.draw(key, -1) < current.localRatio
+                ? current.local : current.remote;
+    }
+
+    private static final class Split {
+
+        private final Endpoint[] endpoints;
+        private final Endpoint[] local;
+        private final Endpoint[] remote;
+        private final double localRatio;
+
+        private Split(Endpoint[] endpoints, Endpoint[] all, String zone) {
+            this.endpoints = endpoints;
+            int size = 0;
+            double available = 0;
+            for (Endpoint endpoint : endpoints) {
+                if (zone.equals(endpoint.getZone())) {
+                    size++;
+                    available += endpoint.getWeight();
+                }
+            }
+            double configured = 0;
+            for (Endpoint endpoint : all) {
+                if (zone.equals(endpoint.getZone())) {
+                    configured += endpoint.getWeight();
+                }
+            }
+            this.local = new Endpoint[size];
+            this.remote = new Endpoint[endpoints.length - size];
+            int l = 0;
+            int r = 0;
+            for (Endpoint endpoint : endpoints) {
+                if (zone.equals(endpoint.getZone())) {
+                    local[l++] = endpoint;
+                } else {
+                    remote[r++] = endpoint;
+                }
+            }
+            this.localRatio = configured > 0 ? Math.min(1, OVERPROVISIONING * available / configured) : 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.domain;
+
+/**
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class CircuitBreakerConfiguration {
+
+    private SlidingWindowType slidingWindowType = SlidingWindowType.count;
+    private int slidingWindowSize = 10;
+    private double failureRateThreshold = 50;
+    private double slowCallRateThreshold = 100;
+    private long slowCallDuration = 60000;
+    private int halfOpenCalls = 3;
+    private int minimumFailures = 3;
+
+    /**
+     * @return
+     */
+    public SlidingWindowType getSlidingWindowType() {
+        return slidingWindowType;
+    }
+    /**
+     * @param slidingWindowType
+     */
+    public void setSlidingWindowType(SlidingWindowType slidingWindowType) {
+        this.slidingWindowType = slidingWindowType;
+    }
+    /**
+     * @return number of calls (count) or seconds (time)
+     */
+    public int getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+    /**
+     * @param slidingWindowSize
+     */
+    public void setSlidingWindowSize(int slidingWindowSize) {
+        this.slidingWindowSize = slidingWindowSize;
+    }
+    /**
+     * @return percentage
+     */
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+    /**
+     * @param failureRateThreshold
+     */
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+    /**
+     * @return percentage
+     */
+    public double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+    /**
+     * @param slowCallRateThreshold
+     */
+    public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+    /**
+     * @return milliseconds
+     */
+    public long getSlowCallDuration() {
+        return slowCallDuration;
+    }
+    /**
+     * @param slowCallDuration
+     */
+    public void setSlowCallDuration(long slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+    /**
+     * @return
+     */
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+    /**
+     * @param halfOpenCalls
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+    /**
+     * @return failures (or slow calls) needed in the sliding window before opening the circuit
+     */
+    public int getMinimumFailures() {
+        return minimumFailures;
+    }
+    /**
+     * @param minimumFailures
+     */
+    public void setMinimumFailures(int minimumFailures) {
+        this.minimumFailures = minimumFailures;
+    }
+}
@@ -18,26 +18,57 @@ package org.flcit.springboot.http.client.core.loadbalancer.domain;
 
 import java.io.IOException;
 import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestClientResponseException;
 
-import org.flcit.commons.core.util.ArrayUtils;
-
 /**
+ * The fail / retry rules are compiled into a {@link FailureClassifier} when they are set (property binding),
+ * so an invalid range fails at startup and a call never compiles them.
  * 
  * @since 
  * @author Florian Lestic
  */
 public class FailOverConfiguration {
 
+    private static final int[] DEFAULT_FAIL_STATUS = { 503 };
+    private static final Class<?>[] DEFAULT_FAIL_EXCEPTIONS = {
+        ConnectException.class, UnknownHostException.class, NoRouteToHostException.class, ConnectTimeoutException.class,
+        SocketTimeoutException.class, NoHttpResponseException.class, ConnectionPoolTimeoutException.class
+    };
+    private static final FailureClassifier DEFAULT_CLASSIFIER = new FailOverConfiguration().getClassifier();
+
     private boolean active;
     private int failMaxAttempt = 3;
     private int retryMaxAttempt = 2;
     private long timeout = 60000;
     private int[] failStatus;
     private int[] retryStatus;
+    private String[] failStatusRanges;
+    private String[] retryStatusRanges;
+    private Class<?>[] failExceptions = DEFAULT_FAIL_EXCEPTIONS;
+    private Class<?>[] retryExceptions;
+    private String[] failHeaders;
+    private volatile FailureClassifier classifier = compile();
+    private long retryBackoff = 100;
+    private long retryMaxBackoff = 2000;
+    private double retryBudget = 0.1;
+    private int retryBudgetMin = 10;
+    private long retryAfterMin = 1000;
+    private long retryAfterMax = 60000;
+    private double throttleWeight = 0.1;
+    private long throttleDuration = 1000;
+    private CircuitBreakerConfiguration circuitBreaker;
+    private HealthProbeConfiguration healthProbe;
+    private SlowStartConfiguration slowStart = new SlowStartConfiguration();
+    private OutlierDetectionConfiguration outlierDetection = new OutlierDetectionConfiguration();
 
     /**
      * @return
@@ -98,6 +129,7 @@ public class FailOverConfiguration {
      */
     public void setFailStatus(int[] failStatus) {
         this.failStatus = failStatus;
+        this.classifier = compile();
     }
     /**
      * @return
@@ -110,40 +142,323 @@ public class FailOverConfiguration {
      */
     public void setRetryStatus(int[] retryStatus) {
         this.retryStatus = retryStatus;
+        this.classifier = compile();
+    }
+    /**
+     * @return
+     */
+    public String[] getFailStatusRanges() {
+        return failStatusRanges;
+    }
+    /**
+     * @param failStatusRanges ex: 500-599
+     */
+    public void setFailStatusRanges(String[] failStatusRanges) {
+        this.failStatusRanges = failStatusRanges;
+        this.classifier = compile();
+    }
+    /**
+     * @return
+     */
+    public String[] getRetryStatusRanges() {
+        return retryStatusRanges;
+    }
+    /**
+     * @param retryStatusRanges ex: 500-599
+     */
+    public void setRetryStatusRanges(String[] retryStatusRanges) {
+        this.retryStatusRanges = retryStatusRanges;
+        this.classifier = compile();
+    }
+    /**
+     * @return
+     */
+    public Class<?>[] getFailExceptions() {
+        return failExceptions;
+    }
+    /**
+     * @param failExceptions exception types (subclasses included) failing the url, anywhere in the cause chain
+     */
+    public void setFailExceptions(Class<?>[] failExceptions) {
+        this.failExceptions = failExceptions;
+        this.classifier = compile();
+    }
+    /**
+     * @return
+     */
+    public Class<?>[] getRetryExceptions() {
+        return retryExceptions;
+    }
+    /**
+     * @param retryExceptions exception types (subclasses included) retried, anywhere in the cause chain
+     */
+    public void setRetryExceptions(Class<?>[] retryExceptions) {
+        this.retryExceptions = retryExceptions;
+        this.classifier = compile();
+    }
+    /**
+     * @return
+     */
+    public String[] getFailHeaders() {
+        return failHeaders;
+    }
+    /**
+     * @param failHeaders headers failing the url when present on an error response (ex: Retry-After)
+     */
+    public void setFailHeaders(String[] failHeaders) {
+        this.failHeaders = failHeaders;
+        this.classifier = compile();
+    }
+    /**
+     * @return compiled rules
+     */
+    public FailureClassifier getClassifier() {
+        return classifier;
+    }
+    private FailureClassifier compile() {
+        return new FailureClassifier(FailureClassifier.compile(failStatus, failStatusRanges, DEFAULT_FAIL_STATUS),
+                FailureClassifier.compile(retryStatus, retryStatusRanges),
+                failExceptions, retryExceptions, failHeaders);
+    }
+    /**
+     * @return milliseconds
+     */
+    public long getRetryBackoff() {
+        return retryBackoff;
+    }
+    /**
+     * @param retryBackoff
+     */
+    public void setRetryBackoff(long retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+    /**
+     * @return milliseconds
+     */
+    public long getRetryMaxBackoff() {
+        return retryMaxBackoff;
+    }
+    /**
+     * @param retryMaxBackoff
+     */
+    public void setRetryMaxBackoff(long retryMaxBackoff) {
+        this.retryMaxBackoff = retryMaxBackoff;
+    }
+    /**
+     * @return retries allowed per call (0.1 => 10%)
+     */
+    public double getRetryBudget() {
+        return retryBudget;
+    }
+    /**
+     * @param retryBudget
+     */
+    public void setRetryBudget(double retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+    /**
+     * @return retries allowed whatever the traffic (budget capacity)
+     */
+    public int getRetryBudgetMin() {
+        return retryBudgetMin;
+    }
+    /**
+     * @param retryBudgetMin
+     */
+    public void setRetryBudgetMin(int retryBudgetMin) {
+        this.retryBudgetMin = retryBudgetMin;
+    }
+    /**
+     * @return milliseconds
+     */
+    public long getRetryAfterMin() {
+        return retryAfterMin;
+    }
+    /**
+     * @param retryAfterMin
+     */
+    public void setRetryAfterMin(long retryAfterMin) {
+        this.retryAfterMin = retryAfterMin;
+    }
+    /**
+     * @return milliseconds
+     */
+    public long getRetryAfterMax() {
+        return retryAfterMax;
+    }
+    /**
+     * @param retryAfterMax
+     */
+    public void setRetryAfterMax(long retryAfterMax) {
+        this.retryAfterMax = retryAfterMax;
+    }
+    /**
+     * @return share of its weight kept by an url answering 429
+     */
+    public double getThrottleWeight() {
+        return throttleWeight;
+    }
+    /**
+     * @param throttleWeight
+     */
+    public void setThrottleWeight(double throttleWeight) {
+        this.throttleWeight = throttleWeight;
+    }
+    /**
+     * @return milliseconds an url answering 429 without Retry-After is throttled
+     */
+    public long getThrottleDuration() {
+        return throttleDuration;
+    }
+    /**
+     * @param throttleDuration
+     */
+    public void setThrottleDuration(long throttleDuration) {
+        this.throttleDuration = throttleDuration;
+    }
+    /**
+     * @param e 429 response
+     * @return milliseconds the url is throttled: Retry-After (bounded), otherwise throttleDuration
+     */
+    public long getThrottleDuration(RestClientException e) {
+        final long retryAfter = getRetryAfter(e);
+        return retryAfter >= 0 ? retryAfter : throttleDuration;
+    }
+    /**
+     * @param e
+     * @return Retry-After of a 429 or 503 response in milliseconds (bounded by retryAfterMin and retryAfterMax), -1 without it
+     */
+    public long getRetryAfter(RestClientException e) {
+        if (!(e instanceof RestClientResponseException)) {
+            return -1;
+        }
+        final RestClientResponseException response = (RestClientResponseException) e;
+        final int status = response.getRawStatusCode();
+        if ((status != 429 && status != 503) || response.getResponseHeaders() == null) {
+            return -1;
+        }
+        final long value = getRetryAfter(response.getResponseHeaders());
+        return value < 0 ? -1 : Math.max(retryAfterMin, Math.min(retryAfterMax, value));
+    }
+    private static long getRetryAfter(HttpHeaders headers) {
+        final String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                return Math.max(0, headers.getFirstDate(HttpHeaders.RETRY_AFTER) - System.currentTimeMillis());
+            } catch (IllegalArgumentException invalid) {
+                return -1;
+            }
+        }
     }
     /**
      * @param e
      * @return
      */
-    public boolean isFail(RestClientException e) {
-        return isStatusCodes(e, 503)
-                || (e.getCause() instanceof IOException && isFailException((IOException) e.getCause()))
-                || isStatusCodes(e, failStatus);
+    public static boolean isTooManyRequests(RestClientException e) {
+        return e instanceof RestClientResponseException && ((RestClientResponseException) e).getRawStatusCode() == 429;
+    }
+    /**
+     * @return null (default) to eject an url on its first failure
+     */
+    public CircuitBreakerConfiguration getCircuitBreaker() {
+        return circuitBreaker;
+    }
+    /**
+     * @param circuitBreaker
+     */
+    public void setCircuitBreaker(CircuitBreakerConfiguration circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+    /**
+     * @return
+     */
+    public HealthProbeConfiguration getHealthProbe() {
+        return healthProbe;
+    }
+    /**
+     * @param healthProbe
+     */
+    public void setHealthProbe(HealthProbeConfiguration healthProbe) {
+        this.healthProbe = healthProbe;
+    }
+    /**
+     * @return
+     */
+    public SlowStartConfiguration getSlowStart() {
+        return slowStart;
+    }
+    /**
+     * @param slowStart
+     */
+    public void setSlowStart(SlowStartConfiguration slowStart) {
+        this.slowStart = slowStart;
+    }
+    /**
+     * @return
+     */
+    public OutlierDetectionConfiguration getOutlierDetection() {
+        return outlierDetection;
+    }
+    /**
+     * @param outlierDetection
+     */
+    public void setOutlierDetection(OutlierDetectionConfiguration outlierDetection) {
+        this.outlierDetection = outlierDetection;
     }
     /**
      * @param e
      * @return
      */
-    public static final boolean isFailException(IOException e) {
-        return isException(e, ConnectException.class)
-                || isException(e, UnknownHostException.class);
+    public boolean isFail(RestClientException e) {
+        return classifier.isFail(e);
     }
-    private static final <T extends IOException> boolean isException(IOException e, Class<T> clazz) {
-        return e.getClass().equals(clazz)
-                || (e.getCause() instanceof IOException
-                        && (e.getCause().getClass().equals(clazz)
-                                || (e.getCause().getCause() instanceof IOException && e.getCause().getCause().getClass().equals(clazz))));
+    /**
+     * @param status
+     * @return
+     */
+    public boolean isFail(int status) {
+        return isFail(status, null);
+    }
+    /**
+     * @param status
+     * @param headers response headers, may be null
+     * @return
+     */
+    public boolean isFail(int status, HttpHeaders headers) {
+        return classifier.isFail(status, headers);
+    }
+    /**
+     * @param status
+     * @return
+     */
+    public boolean isRetry(int status) {
+        return isRetry(status, null);
+    }
+    /**
+     * @param status
+     * @param headers response headers, may be null
+     * @return
+     */
+    public boolean isRetry(int status, HttpHeaders headers) {
+        return classifier.isRetry(status);
+    }
+    /**
+     * @param e
+     * @return true for the default fail exceptions (connection, unknown host, timeouts...) in the cause chain
+     */
+    public static final boolean isFailException(IOException e) {
+        return DEFAULT_CLASSIFIER.isFail(e);
     }
     /**
      * @param e
      * @return
      */
     public boolean isRetry(RestClientException e) {
-        return RestClientResponseException.class.isAssignableFrom(e.getClass())
-                && ArrayUtils.contains(retryStatus, ((RestClientResponseException) e).getRawStatusCode());
-    }
-    private static final boolean isStatusCodes(RestClientException e, int... statusCodes) {
-        return RestClientResponseException.class.isAssignableFrom(e.getClass())
-                && ArrayUtils.contains(statusCodes, ((RestClientResponseException) e).getRawStatusCode());
+        return classifier.isRetry(e);
     }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.domain;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Rules of a {@link FailOverConfiguration} compiled once: status in bitsets, exception types (instanceof)
+ * resolved once per exception class then memoized, so a classification costs a few lookups.
+ * Fail and retry are independent: a status or an exception may be both (see {@link #isFail} and {@link #isRetry}),
+ * {@link #classify} gives the fail priority.
+ * A 429 is always a fail (the url is throttled, see {@link FailOverConfiguration#getThrottleDuration(org.springframework.web.client.RestClientException)}).
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class FailureClassifier {
+
+    /**
+     * 
+     * @since 
+     * @author Florian Lestic
+     */
+    public enum Verdict {
+        /** neither fail nor retry */
+        NONE,
+        /** the url is reported as failed, the call may go to another url */
+        FAIL,
+        /** the call may be retried */
+        RETRY
+    }
+
+    private static final int MAX_STATUS = 1000;
+    private static final int MAX_CAUSES = 10;
+    private static final int FAIL = 1;
+    private static final int RETRY = 2;
+
+    private final BitSet failStatus;
+    private final BitSet retryStatus;
+    private final Class<?>[] failExceptions;
+    private final Class<?>[] retryExceptions;
+    private final String[] failHeaders;
+    private final Map<Class<?>, Integer> rules = new ConcurrentHashMap<>();
+
+    FailureClassifier(BitSet failStatus, BitSet retryStatus, Class<?>[] failExceptions, Class<?>[] retryExceptions, String[] failHeaders) {
+        this.failStatus = failStatus;
+        this.retryStatus = retryStatus;
+        this.failExceptions = failExceptions != null ? failExceptions : new Class<?>[0];
+        this.retryExceptions = retryExceptions != null ? retryExceptions : new Class<?>[0];
+        this.failHeaders = failHeaders != null ? failHeaders : new String[0];
+    }
+
+    /**
+     * @param status
+     * @param headers response headers, may be null
+     * @return
+     */
+    public Verdict classify(int status, HttpHeaders headers) {
+        if (isFail(status, headers)) {
+            return Verdict.FAIL;
+        }
+        return isRetry(status) ? Verdict.RETRY : Verdict.NONE;
+    }
+
+    /**
+     * @param status
+     * @param headers response headers, may be null
+     * @return
+     */
+    public boolean isFail(int status, HttpHeaders headers) {
+        if (status < 0 || status >= MAX_STATUS) {
+            return false;
+        }
+        if (failStatus.get(status) || status == 429) {
+            return true;
+        }
+        if (status >= 400 && headers != null) {
+            for (String header : failHeaders) {
+                if (headers.containsKey(header)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param status
+     * @return
+     */
+    public boolean isRetry(int status) {
+        return status >= 0 && status < MAX_STATUS && retryStatus.get(status);
+    }
+
+    /**
+     * @param e
+     * @return the response status is a fail, otherwise an exception of the cause chain is a fail exception
+     */
+    public boolean isFail(Throwable e) {
+        if (e instanceof RestClientResponseException) {
+            final RestClientResponseException response = (RestClientResponseException) e;
+            return isFail(response.getRawStatusCode(), response.getResponseHeaders());
+        }
+        return (getRules(e) & FAIL) != 0;
+    }
+
+    /**
+     * @param e
+     * @return the response status is a retry status, otherwise an exception of the cause chain is a retry exception
+     */
+    public boolean isRetry(Throwable e) {
+        if (e instanceof RestClientResponseException) {
+            return isRetry(((RestClientResponseException) e).getRawStatusCode());
+        }
+        return (getRules(e) & RETRY) != 0;
+    }
+
+    /**
+     * @param e
+     * @return the verdict of the response status, otherwise of the first exception of the cause chain matching a rule
+     */
+    public Verdict classify(Throwable e) {
+        if (e instanceof RestClientResponseException) {
+            final RestClientResponseException response = (RestClientResponseException) e;
+            return classify(response.getRawStatusCode(), response.getResponseHeaders());
+        }
+        Throwable cause = e;
+        for (int i = 0; i < MAX_CAUSES && cause != null; i++) {
+            final int value = getRules(cause.getClass());
+            if (value != 0) {
+                return (value & FAIL) != 0 ? Verdict.FAIL : Verdict.RETRY;
+            }
+            cause = cause.getCause() != cause ? cause.getCause() : null;
+        }
+        return Verdict.NONE;
+    }
+
+    private int getRules(Throwable e) {
+        int res = 0;
+        Throwable cause = e;
+        for (int i = 0; i < MAX_CAUSES && cause != null; i++) {
+            res |= getRules(cause.getClass());
+            cause = cause.getCause() != cause ? cause.getCause() : null;
+        }
+        return res;
+    }
+
+    private int getRules(Class<?> clazz) {
+        final Integer value = rules.get(clazz);
+        return value != null ? value : rules.computeIfAbsent(clazz, this::resolve);
+    }
+
+    private int resolve(Class<?> clazz) {
+        int res = 0;
+        for (Class<?> value : failExceptions) {
+            if (value.isAssignableFrom(clazz)) {
+                res |= FAIL;
+                break;
+            }
+        }
+        for (Class<?> value : retryExceptions) {
+            if (value.isAssignableFrom(clazz)) {
+                res |= RETRY;
+                break;
+            }
+        }
+        return res;
+    }
+
+    static BitSet compile(int[] status, String[] ranges, int... defaults) {
+        final BitSet res = new BitSet(MAX_STATUS);
+        set(res, defaults);
+        set(res, status);
+        if (ranges != null) {
+            for (String range : ranges) {
+                final int index = range.indexOf('-');
+                final int from = Integer.parseInt(range.substring(0, index != -1 ? index : range.length()).trim());
+                final int to = index != -1 ? Integer.parseInt(range.substring(index + 1).trim()) : from;
+                res.set(Math.max(0, from), Math.min(MAX_STATUS - 1, to) + 1);
+            }
+        }
+        return res;
+    }
+
+    private static void set(BitSet res, int[] status) {
+        if (status != null) {
+            for (int value : status) {
+                if (value >= 0 && value < MAX_STATUS) {
+                    res.set(value);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.domain;
+
+import org.apache.http.client.HttpClient;
+
+import org.flcit.springboot.http.client.core.health.HealthIndicator;
+
+/**
+ * Background probe of the ejected urls: a relative url is appended to each load balanced url,
+ * an absolute one is called on the host of each load balanced url. The response must be a 2xx
+ * matching responseText (contained) and responseFields (JSON path with dots => value).
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class HealthProbeConfiguration extends HealthIndicator {
+
+    private long interval = 10000;
+    private long jitter = 1000;
+    private int concurrency = 4;
+    private int timeout = 2000;
+    private HttpClient httpClient;
+
+    /**
+     * @return milliseconds
+     */
+    public long getInterval() {
+        return interval;
+    }
+    /**
+     * @param interval
+     */
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+    /**
+     * @return milliseconds
+     */
+    public long getJitter() {
+        return jitter;
+    }
+    /**
+     * @param jitter
+     */
+    public void setJitter(long jitter) {
+        this.jitter = jitter;
+    }
+    /**
+     * @return maximum probes in progress
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+    /**
+     * @param concurrency
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+    /**
+     * @return milliseconds
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+    /**
+     * @param timeout
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+    /**
+     * @return client of the probes (SSL, proxy and timeouts of the load balanced client), null for a default client
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+    /**
+     * @param httpClient
+     */
+    public void setHttpClient(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+}
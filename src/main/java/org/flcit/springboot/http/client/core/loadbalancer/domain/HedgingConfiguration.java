@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.domain;
+
+/**
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class HedgingConfiguration {
+
+    private boolean active;
+    private long delay;
+    private long minDelay = 10;
+    private double maxRate = 0.05;
+
+    /**
+     * @return
+     */
+    public boolean isActive() {
+        return active;
+    }
+    /**
+     * @param active
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+    /**
+     * @return milliseconds, 0 for the p95 of the recent calls
+     */
+    public long getDelay() {
+        return delay;
+    }
+    /**
+     * @param delay
+     */
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+    /**
+     * @return milliseconds, lower bound of the adaptive delay
+     */
+    public long getMinDelay() {
+        return minDelay;
+    }
+    /**
+     * @param minDelay
+     */
+    public void setMinDelay(long minDelay) {
+        this.minDelay = minDelay;
+    }
+    /**
+     * @return hedges allowed per call (0.05 => 5%)
+     */
+    public double getMaxRate() {
+        return maxRate;
+    }
+    /**
+     * @param maxRate
+     */
+    public void setMaxRate(double maxRate) {
+        this.maxRate = maxRate;
+    }
+
+}
@@ -28,6 +28,15 @@ public enum LoadBalancerAlgorithm {
     weightRoundRobin,
     ipHash,
     random,
-    weightRandom;
+    weightRandom,
+    leastRequests,
+    p2cEwma;
+
+    /**
+     * @return
+     */
+    public boolean isWeighted() {
+        return this == weightRoundRobin || this == weightRandom;
+    }
 
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.domain;
+
+/**
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class OutlierDetectionConfiguration {
+
+    private boolean active;
+    private long interval = 10000;
+    private double percentile = 50;
+    private double threshold = 3;
+    private int minimumCalls = 20;
+    private double maxEjectionPercent = 50;
+
+    /**
+     * @return
+     */
+    public boolean isActive() {
+        return active;
+    }
+    /**
+     * @param active
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+    /**
+     * @return milliseconds
+     */
+    public long getInterval() {
+        return interval;
+    }
+    /**
+     * @param interval
+     */
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+    /**
+     * @return percentile of the latency compared between the urls (50 = median)
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+    /**
+     * @param percentile
+     */
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+    /**
+     * @return ratio to the median of the urls above which an url is an outlier
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+    /**
+     * @param threshold
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+    /**
+     * @return calls needed in the interval for an url to be evaluated
+     */
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+    /**
+     * @param minimumCalls
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+    /**
+     * @return percentage
+     */
+    public double getMaxEjectionPercent() {
+        return maxEjectionPercent;
+    }
+    /**
+     * @param maxEjectionPercent
+     */
+    public void setMaxEjectionPercent(double maxEjectionPercent) {
+        this.maxEjectionPercent = maxEjectionPercent;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.domain;
+
+/**
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class SlowStartConfiguration {
+
+    private long window;
+    private double minWeight = 0.1;
+    private double aggression = 1;
+
+    /**
+     * @return milliseconds (0 = no slow start)
+     */
+    public long getWindow() {
+        return window;
+    }
+    /**
+     * @param window
+     */
+    public void setWindow(long window) {
+        this.window = window;
+    }
+    /**
+     * @return share of the weight given at re-admission (0.1 => 10%)
+     */
+    public double getMinWeight() {
+        return minWeight;
+    }
+    /**
+     * @param minWeight
+     */
+    public void setMinWeight(double minWeight) {
+        this.minWeight = minWeight;
+    }
+    /**
+     * @return curve of the ramp (1 = linear, higher = faster at the beginning)
+     */
+    public double getAggression() {
+        return aggression;
+    }
+    /**
+     * @param aggression
+     */
+    public void setAggression(double aggression) {
+        this.aggression = aggression;
+    }
+}
@@ -16,8 +16,11 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer.provider;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.springframework.util.ObjectUtils;
 
@@ -28,13 +31,17 @@ import org.springframework.util.ObjectUtils;
  */
 public class BaseLoadBalancerProvider implements LoadBalancerProvider {
 
+    private static final Endpoint[] EMPTY = new Endpoint[0];
+
     private final String[] urls;
+    private final Endpoint[] endpoints;
+    private final EndpointIndex index;
 
     /**
      * @param urls
      */
     public BaseLoadBalancerProvider(String[] urls) {
-        this.urls = urls;
+        this(urls, null, null);
     }
 
     /**
@@ -42,7 +49,25 @@ public class BaseLoadBalancerProvider implements LoadBalancerProvider {
      * @param weights
      */
     public BaseLoadBalancerProvider(String[] urls, int[] weights) {
-        this(getUrls(urls, weights));
+        this(urls, weights != null ? Arrays.stream(weights).asDoubleStream().toArray() : null, null);
+    }
+
+    /**
+     * @param urls
+     * @param weights
+     * @param zones zone of each url (zone aware load balancing)
+     */
+    public BaseLoadBalancerProvider(String[] urls, double[] weights, String[] zones) {
+        this(getEndpoints(urls, weights, zones));
+    }
+
+    BaseLoadBalancerProvider(Endpoint[] endpoints) {
+        this.endpoints = endpoints;
+        this.urls = new String[endpoints.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            this.urls[i] = endpoints[i].getUrl();
+        }
+        this.index = new EndpointIndex(this.endpoints);
     }
 
     @Override
@@ -50,19 +75,76 @@ public class BaseLoadBalancerProvider implements LoadBalancerProvider {
         return this.urls;
     }
 
-    @SuppressWarnings("java:S1168")
-    private static final String[] getUrls(String[] urls, int[] weights) {
+    @Override
+    public Endpoint[] getEndpoints() {
+        return this.endpoints;
+    }
+
+    @Override
+    public final Endpoint[] getAllEndpoints() {
+        return this.endpoints;
+    }
+
+    @Override
+    public Endpoint getEndpoint(String callUrl) {
+        return this.index.get(callUrl);
+    }
+
+    @Override
+    public Endpoint getEndpoint(URI callUrl) {
+        return this.index.get(callUrl);
+    }
+
+    static final Endpoint[] getEndpoints(String[] urls, double[] weights, String[] zones) {
+        final Map<String, Double> values = weights != null ? getWeights(urls, weights) : null;
+        return values != null ? getEndpoints(values, urls, zones) : getEndpoints(urls, zones);
+    }
+
+    private static final Endpoint[] getEndpoints(String[] urls, String[] zones) {
+        if (ObjectUtils.isEmpty(urls)) {
+            return EMPTY;
+        }
+        final Map<String, Endpoint> values = new LinkedHashMap<>(urls.length);
+        final Endpoint[] res = new Endpoint[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            final String zone = getZone(zones, i);
+            res[i] = values.computeIfAbsent(urls[i], url -> new Endpoint(url, 1d, zone));
+        }
+        return res;
+    }
+
+    private static final Endpoint[] getEndpoints(Map<String, Double> weights, String[] urls, String[] zones) {
+        final Map<String, String> zoneByUrl = new HashMap<>(urls.length);
+        for (int i = 0; i < urls.length; i++) {
+            final String zone = getZone(zones, i);
+            if (zone != null) {
+                zoneByUrl.putIfAbsent(urls[i], zone);
+            }
+        }
+        final Endpoint[] res = new Endpoint[weights.size()];
+        int i = 0;
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            res[i++] = new Endpoint(entry.getKey(), entry.getValue(), zoneByUrl.get(entry.getKey()));
+        }
+        return res;
+    }
+
+    private static final String getZone(String[] zones, int index) {
+        return zones != null && index < zones.length ? zones[index] : null;
+    }
+
+    private static final Map<String, Double> getWeights(String[] urls, double[] weights) {
         if (ObjectUtils.isEmpty(urls)) {
             return null;
         }
-        final List<String> values = new ArrayList<>();
+        final Map<String, Double> values = new LinkedHashMap<>(urls.length);
         for (int i = 0; i < urls.length; i++) {
-            int weight = weights != null && i < weights.length ? weights[i] : 1;
-            for (int n = 0; n < weight; n++) {
-                values.add(urls[i]);
+            double weight = weights != null && i < weights.length ? weights[i] : 1d;
+            if (weight > 0) {
+                values.merge(urls[i], weight, Double::sum);
             }
         }
-        return values.toArray(new String[0]);
+        return values;
     }
 
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.CircuitBreakerConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.SlidingWindowType;
+
+/**
+ * Closed / open / half-open circuit of one endpoint. Outcomes are recorded in a lock-free ring buffer
+ * (last N calls or last N seconds); the circuit opens when at least {@code minimumFailures} failures are in the window
+ * and the failure rate (or the slow call rate) reaches its threshold. Opening and expiry are driven by the provider:
+ * once the ejection timeout expired, {@code halfOpenCalls} probes are let through and close the circuit if they all succeed.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class CircuitBreaker {
+
+    static final int CLOSED = 0;
+    static final int OPEN = 1;
+    static final int HALF_OPEN = 2;
+
+    private static final int STATE_MASK = 0x3;
+    private static final int PROBE = 1 << 2;
+    private static final int SUCCESS = 1 << 16;
+    private static final int COUNT_MASK = 0x3FFF;
+
+    private static final int NONE = 0;
+    private static final int OK = 1;
+    private static final int FAILED = 2;
+    private static final int SLOW = 3;
+
+    private final int minimumFailures;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallDuration;
+    private final int halfOpenCalls;
+    private final Window window;
+    private final AtomicInteger status = new AtomicInteger(CLOSED);
+
+    CircuitBreaker(CircuitBreakerConfiguration configuration) {
+        this.minimumFailures = Math.max(1, configuration.getMinimumFailures());
+        this.failureRateThreshold = configuration.getFailureRateThreshold();
+        this.slowCallRateThreshold = configuration.getSlowCallRateThreshold();
+        this.slowCallDuration = configuration.getSlowCallDuration() > 0 ? TimeUnit.MILLISECONDS.toNanos(configuration.getSlowCallDuration()) : Long.MAX_VALUE;
+        this.halfOpenCalls = Math.max(1, Math.min(configuration.getHalfOpenCalls(), COUNT_MASK));
+        final int size = Math.max(1, configuration.getSlidingWindowSize());
+        this.window = configuration.getSlidingWindowType() == SlidingWindowType.time ? new TimeWindow(size) : new CountWindow(size);
+    }
+
+    /**
+     * Eject on the first failure, one probe.
+     */
+    CircuitBreaker() {
+        this.minimumFailures = 1;
+        this.failureRateThreshold = 0;
+        this.slowCallRateThreshold = 100;
+        this.slowCallDuration = Long.MAX_VALUE;
+        this.halfOpenCalls = 1;
+        this.window = new CountWindow(1);
+    }
+
+    int getState() {
+        return status.get() & STATE_MASK;
+    }
+
+    /**
+     * @param now
+     * @return true when the endpoint must be ejected
+     */
+    boolean onFailure(long now) {
+        final int current = status.get();
+        if ((current & STATE_MASK) == CLOSED) {
+            window.record(FAILED, now);
+            if (!window.isTripped(now)) {
+                return false;
+            }
+        }
+        status.set(OPEN);
+        return true;
+    }
+
+    /**
+     * @param duration call duration in nanoseconds (negative when unknown)
+     * @param now
+     * @return {@link #OPEN} when slow calls opened the circuit, {@link #CLOSED} when the half-open probes succeeded, -1 otherwise
+     */
+    int onSuccess(long duration, long now) {
+        int current = status.get();
+        if ((current & STATE_MASK) == CLOSED) {
+            final boolean slow = duration >= slowCallDuration;
+            window.record(slow ? SLOW : OK, now);
+            return slow && window.isTripped(now) && status.compareAndSet(current, OPEN) ? OPEN : -1;
+        }
+        while ((current & STATE_MASK) == HALF_OPEN) {
+            final int next = current + SUCCESS;
+            final boolean closed = ((next >>> 16) & COUNT_MASK) >= halfOpenCalls;
+            if (status.compareAndSet(current, closed ? CLOSED : next)) {
+                if (closed) {
+                    window.reset();
+                    return CLOSED;
+                }
+                return -1;
+            }
+            current = status.get();
+        }
+        return -1;
+    }
+
+    /**
+     * Call let through an ejected endpoint whose timeout expired.
+     * @return true when the half-open probes are exhausted (keep the endpoint out until their outcome)
+     */
+    boolean onProbe() {
+        int current;
+        int next;
+        do {
+            current = status.get();
+            switch (current & STATE_MASK) {
+            case OPEN:
+                next = HALF_OPEN | PROBE;
+                break;
+            case HALF_OPEN:
+                next = ((current >>> 2) & COUNT_MASK) < COUNT_MASK ? current + PROBE : current;
+                break;
+            default:
+                return false;
+            }
+        } while (!status.compareAndSet(current, next));
+        return ((next >>> 2) & COUNT_MASK) >= halfOpenCalls;
+    }
+
+    void trip() {
+        status.set(OPEN);
+    }
+
+    void reset() {
+        window.reset();
+        status.set(CLOSED);
+    }
+
+    private boolean isTripped(int calls, int failures, int slowCalls) {
+        return (failures >= minimumFailures && failures * 100d >= failureRateThreshold * calls)
+                || (slowCalls >= minimumFailures && slowCalls * 100d >= slowCallRateThreshold * calls);
+    }
+
+    private abstract class Window {
+
+        abstract void record(int outcome, long now);
+
+        abstract boolean isTripped(long now);
+
+        abstract void reset();
+
+    }
+
+    /**
+     * Last {@code size} outcomes: each call overwrites the oldest slot and adjusts the counters by the difference.
+     */
+    private final class CountWindow extends Window {
+
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong cursor = new AtomicLong();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        private CountWindow(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        @Override
+        void record(int outcome, long now) {
+            final int index = (int) ((cursor.getAndIncrement() & Long.MAX_VALUE) % outcomes.length());
+            final int previous = outcomes.getAndSet(index, outcome);
+            if (previous == NONE) {
+                calls.incrementAndGet();
+            }
+            if (previous != outcome) {
+                failures.addAndGet((outcome == FAILED ? 1 : 0) - (previous == FAILED ? 1 : 0));
+                slowCalls.addAndGet((outcome == SLOW ? 1 : 0) - (previous == SLOW ? 1 : 0));
+            }
+        }
+
+        @Override
+        boolean isTripped(long now) {
+            return CircuitBreaker.this.isTripped(calls.get(), Math.max(0, failures.get()), Math.max(0, slowCalls.get()));
+        }
+
+        @Override
+        void reset() {
+            for (int i = 0; i < outcomes.length(); i++) {
+                outcomes.set(i, NONE);
+            }
+            calls.set(0);
+            failures.set(0);
+            slowCalls.set(0);
+        }
+
+    }
+
+    /**
+     * Last {@code size} seconds: one bucket per second, reused when its stamp is older than the window.
+     * Each bucket packs calls, failures and slow calls (21 bits each) so a call is a single atomic add.
+     */
+    private final class TimeWindow extends Window {
+
+        private static final int BITS = 21;
+        private static final long MASK = (1L << BITS) - 1;
+
+        private final long origin = System.nanoTime();
+        private final AtomicLongArray stamps;
+        private final AtomicLongArray counts;
+
+        private TimeWindow(int size) {
+            this.stamps = new AtomicLongArray(size);
+            this.counts = new AtomicLongArray(size);
+            reset();
+        }
+
+        @Override
+        void record(int outcome, long now) {
+            final long second = getSecond(now);
+            final int index = (int) (second % stamps.length());
+            final long stamp = stamps.get(index);
+            if (stamp != second && stamps.compareAndSet(index, stamp, second)) {
+                counts.set(index, 0);
+            }
+            counts.addAndGet(index, (1L << (BITS * 2)) | (outcome == FAILED ? 1L << BITS : 0) | (outcome == SLOW ? 1L : 0));
+        }
+
+        @Override
+        boolean isTripped(long now) {
+            final long second = getSecond(now);
+            int calls = 0;
+            int failures = 0;
+            int slowCalls = 0;
+            for (int i = 0; i < stamps.length(); i++) {
+                if (stamps.get(i) > second - stamps.length()) {
+                    final long value = counts.get(i);
+                    calls += (int) (value >>> (BITS * 2));
+                    failures += (int) ((value >>> BITS) & MASK);
+                    slowCalls += (int) (value & MASK);
+                }
+            }
+            return CircuitBreaker.this.isTripped(calls, failures, slowCalls);
+        }
+
+        @Override
+        void reset() {
+            for (int i = 0; i < stamps.length(); i++) {
+                stamps.set(i, Long.MIN_VALUE);
+                counts.set(i, 0);
+            }
+        }
+
+        private long getSecond(long now) {
+            return Math.max(0, now - origin) / 1_000_000_000L;
+        }
+
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.lang.ref.WeakReference;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.util.InetAddressUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+
+/**
+ * Expands each configured url into one endpoint per resolved address (A / AAAA records): {@code https://api.internal/v1}
+ * becomes {@code https://10.0.0.1:443/v1}, {@code https://10.0.0.2:443/v1}... sharing the weight of the url, with the
+ * host name in the {@code host} metadata. The provider keeps the host name of each address of its last resolution
+ * for the {@link DnsRoutePlanner} of its client, which keeps it for the Host header, SNI and certificate verification.
+ * Resolution runs every ttl on a shared daemon thread; an address that disappears is no longer chosen nor mapped (its calls
+ * in progress end normally), a failed resolution keeps the previous addresses. An address and port already resolved
+ * for another host name of the provider (virtual hosting) is not expanded: the url is then kept as is.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class DnsLoadBalancerProvider extends DynamicLoadBalancerProvider {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DnsLoadBalancerProvider.class);
+    private static final ScheduledExecutorService SCHEDULER;
+
+    static {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("load-balancer-dns-");
+        threadFactory.setDaemon(true);
+        SCHEDULER = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    private final Endpoint[] configured;
+    private final long ttl;
+    private final Map<Endpoint, Endpoint[]> resolved = new HashMap<>();
+    private volatile Map<String, String> hosts = Collections.emptyMap();
+    private volatile boolean closed;
+
+    /**
+     * @param urls
+     * @param weights
+     * @param zones
+     * @param ttl milliseconds between two resolutions
+     * @param failOver null or inactive for no fail over
+     */
+    public DnsLoadBalancerProvider(String[] urls, double[] weights, String[] zones, long ttl, FailOverConfiguration failOver) {
+        super(failOver);
+        this.configured = BaseLoadBalancerProvider.getEndpoints(urls, weights, zones);
+        this.ttl = Math.max(1, ttl);
+        resolve();
+        SCHEDULER.schedule(new Refresh(this), this.ttl, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void resolve() {
+        final List<Endpoint> res = new ArrayList<>();
+        final Map<String, String> next = new HashMap<>();
+        for (Endpoint endpoint : configured) {
+            Collections.addAll(res, resolve(endpoint, next));
+        }
+        this.hosts = next;
+        publish(res.toArray(new Endpoint[0]));
+    }
+
+    private Endpoint[] resolve(Endpoint endpoint, Map<String, String> next) {
+        if (endpoint.host == null || isAddress(endpoint.host)) {
+            return new Endpoint[] { endpoint };
+        }
+        final InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(endpoint.host);
+        } catch (UnknownHostException e) {
+            LOG.warn("Load balancer resolution of {} failed", endpoint.host, e);
+            hosts.forEach((key, host) -> {
+                if (host.equals(endpoint.host)) {
+                    next.putIfAbsent(key, host);
+                }
+            });
+            return resolved.getOrDefault(endpoint, new Endpoint[] { endpoint });
+        }
+        final String authority = endpoint.getUrl().substring(0, endpoint.getUrl().indexOf("://") + 3);
+        final int pathIndex = endpoint.getUrl().indexOf('/', authority.length());
+        final String path = pathIndex != -1 ? endpoint.getUrl().substring(pathIndex) : "";
+        final Map<String, String> metadata = new HashMap<>(endpoint.getMetadata());
+        metadata.put("host", endpoint.host);
+        final String[] keys = new String[addresses.length];
+        final Endpoint[] res = new Endpoint[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            final String address = getAddress(addresses[i]);
+            keys[i] = key(endpoint.scheme, address, endpoint.port);
+            if (!endpoint.host.equals(next.getOrDefault(keys[i], endpoint.host))) {
+                return new Endpoint[] { endpoint };
+            }
+            res[i] = new Endpoint(authority + address + ':' + endpoint.port + path,
+                    endpoint.getWeight() / addresses.length, endpoint.getZone(), metadata);
+        }
+        for (String key : keys) {
+            next.put(key, endpoint.host);
+        }
+        resolved.put(endpoint, res);
+        return res;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    /**
+     * @param scheme
+     * @param address ip (between brackets for IPv6)
+     * @param port
+     * @return the host name the address was resolved from, null when the address does not come from the last resolution
+     */
+    public String getHostName(String scheme, String address, int port) {
+        return hosts.get(key(scheme, address, port));
+    }
+
+    private static String key(String scheme, String address, int port) {
+        return scheme + "://" + address + ':' + port;
+    }
+
+    private static String getAddress(InetAddress address) {
+        if (!(address instanceof Inet6Address)) {
+            return address.getHostAddress();
+        }
+        final String value = address.getHostAddress();
+        final int scope = value.indexOf('%');
+        return '[' + (scope != -1 ? value.substring(0, scope) : value) + ']';
+    }
+
+    private static boolean isAddress(String host) {
+        return InetAddressUtils.isIPv4Address(host) || host.startsWith("[");
+    }
+
+    private static final class Refresh implements Runnable {
+
+        private final WeakReference<DnsLoadBalancerProvider> provider;
+
+        private Refresh(DnsLoadBalancerProvider provider) {
+            this.provider = new WeakReference<>(provider);
+        }
+
+        @Override
+        public void run() {
+            final DnsLoadBalancerProvider current = provider.get();
+            if (current == null || current.closed) {
+                return;
+            }
+            try {
+                current.resolve();
+            } catch (RuntimeException e) {
+                LOG.warn("Load balancer resolution failed", e);
+            } finally {
+                SCHEDULER.schedule(this, current.ttl, TimeUnit.MILLISECONDS);
+            }
+        }
+
+    }
+
+}
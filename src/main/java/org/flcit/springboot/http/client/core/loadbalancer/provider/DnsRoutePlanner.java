@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.RouteInfo;
+import org.apache.http.impl.conn.DefaultRoutePlanner;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.protocol.HttpContext;
+
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+
+/**
+ * Apache client side of {@link DnsLoadBalancerProvider}: a call to an address expanded from a host name by the current
+ * provider of the load balancer client connects to this address but keeps the host name for the Host header, SNI and
+ * certificate verification. Any other call is routed as by {@link DefaultRoutePlanner}.
+ * Installed only on the Apache clients whose load balancer client resolves its urls ({@link LoadBalancerClient#isDns()}).
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class DnsRoutePlanner extends DefaultRoutePlanner implements HttpRequestInterceptor {
+
+    private final LoadBalancerClient loadBalancerClient;
+
+    /**
+     * @param loadBalancerClient
+     */
+    public DnsRoutePlanner(LoadBalancerClient loadBalancerClient) {
+        super(DefaultSchemePortResolver.INSTANCE);
+        this.loadBalancerClient = loadBalancerClient;
+    }
+
+    @Override
+    public HttpRoute determineRoute(HttpHost host, HttpRequest request, HttpContext context) throws HttpException {
+        return super.determineRoute(getTarget(host), request, context);
+    }
+
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        final RouteInfo route = HttpClientContext.adapt(context).getHttpRoute();
+        final HttpHost target = route != null ? route.getTargetHost() : null;
+        if (target != null && target.getAddress() != null && !request.containsHeader(HttpHeaders.HOST)) {
+            request.setHeader(HttpHeaders.HOST, isDefaultPort(target) ? target.getHostName() : target.toHostString());
+        }
+    }
+
+    private static boolean isDefaultPort(HttpHost target) {
+        return target.getPort() == ("https".equalsIgnoreCase(target.getSchemeName()) ? 443 : 80);
+    }
+
+    private HttpHost getTarget(HttpHost host) {
+        if (host == null || host.getAddress() != null) {
+            return host;
+        }
+        try {
+            final int port = DefaultSchemePortResolver.INSTANCE.resolve(host);
+            final String hostName = loadBalancerClient.getHostName(host.getSchemeName(), host.getHostName(), port);
+            return hostName != null ? new HttpHost(InetAddress.getByName(host.getHostName()), hostName, port, host.getSchemeName()) : host;
+        } catch (IOException e) {
+            return host;
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+
+/**
+ * Provider whose endpoints change at runtime (discovery): each snapshot is an immutable provider published through
+ * a volatile field, so callers never block. Unchanged endpoints keep their instance from one snapshot to the next
+ * and the fail over state of the urls kept is carried over.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public abstract class DynamicLoadBalancerProvider implements LoadBalancerProvider, FailOverLoadBalancer, Closeable {
+
+    private final FailOverConfiguration failOver;
+    private volatile LoadBalancerProvider snapshot = new BaseLoadBalancerProvider(new Endpoint[0]);
+
+    /**
+     * @param failOver null or inactive for no fail over
+     */
+    protected DynamicLoadBalancerProvider(FailOverConfiguration failOver) {
+        this.failOver = failOver != null && failOver.isActive() ? failOver : null;
+    }
+
+    /**
+     * Publishes a new snapshot of the endpoints.
+     * 
+     * @param endpoints
+     */
+    final synchronized void publish(Endpoint[] endpoints) {
+        final LoadBalancerProvider previous = this.snapshot;
+        final Endpoint[] all = previous.getAllEndpoints();
+        final Map<String, Endpoint> current = new HashMap<>();
+        for (Endpoint endpoint : all) {
+            current.put(endpoint.getUrl(), endpoint);
+        }
+        final Endpoint[] values = new Endpoint[endpoints.length];
+        boolean changed = endpoints.length != all.length;
+        for (int i = 0; i < endpoints.length; i++) {
+            final Endpoint endpoint = current.get(endpoints[i].getUrl());
+            values[i] = endpoints[i].sameAs(endpoint) ? endpoint : endpoints[i];
+            changed = changed || values[i] != all[i];
+        }
+        if (!changed) {
+            return;
+        }
+        this.snapshot = carryOver(failOver != null && values.length > 1
+                ? new FailOverLoadBalancerProvider(values, failOver)
+                : new BaseLoadBalancerProvider(values), previous);
+    }
+
+    /**
+     * Hot reconfiguration: takes over the fail over state of the previous provider, before publication.
+     * 
+     * @param previous
+     */
+    public void carryOver(DynamicLoadBalancerProvider previous) {
+        this.snapshot = carryOver(this.snapshot, previous.snapshot);
+    }
+
+    private static LoadBalancerProvider carryOver(LoadBalancerProvider next, LoadBalancerProvider previous) {
+        if (next instanceof FailOverLoadBalancerProvider && previous instanceof FailOverLoadBalancerProvider) {
+            ((FailOverLoadBalancerProvider) next).carryOver((FailOverLoadBalancerProvider) previous);
+        }
+        return next;
+    }
+
+    @Override
+    public String[] getUrls() {
+        return snapshot.getUrls();
+    }
+
+    @Override
+    public Endpoint[] getEndpoints() {
+        return snapshot.getEndpoints();
+    }
+
+    @Override
+    public Endpoint[] getAllEndpoints() {
+        return snapshot.getAllEndpoints();
+    }
+
+    @Override
+    public Endpoint getEndpoint(String callUrl) {
+        return snapshot.getEndpoint(callUrl);
+    }
+
+    @Override
+    public Endpoint getEndpoint(URI callUrl) {
+        return snapshot.getEndpoint(callUrl);
+    }
+
+    @Override
+    public void take(Endpoint endpoint) {
+        final LoadBalancerProvider current = this.snapshot;
+        if (current instanceof FailOverLoadBalancer) {
+            ((FailOverLoadBalancer) current).take(endpoint);
+        }
+    }
+
+    @Override
+    public Endpoint fail(Endpoint endpoint, long timeout) {
+        final LoadBalancerProvider current = this.snapshot;
+        return current instanceof FailOverLoadBalancer ? ((FailOverLoadBalancer) current).fail(endpoint, timeout) : null;
+    }
+
+    @Override
+    public Endpoint eject(Endpoint endpoint, long timeout) {
+        final LoadBalancerProvider current = this.snapshot;
+        return current instanceof FailOverLoadBalancer ? ((FailOverLoadBalancer) current).eject(endpoint, timeout) : null;
+    }
+
+    @Override
+    public void throttle(Endpoint endpoint, long duration) {
+        final LoadBalancerProvider current = this.snapshot;
+        if (current instanceof FailOverLoadBalancer) {
+            ((FailOverLoadBalancer) current).throttle(endpoint, duration);
+        }
+    }
+
+    @Override
+    public void ok(Endpoint endpoint, long duration) {
+        final LoadBalancerProvider current = this.snapshot;
+        if (current instanceof FailOverLoadBalancer) {
+            ((FailOverLoadBalancer) current).ok(endpoint, duration);
+        }
+    }
+
+    @Override
+    public double getSlowStartFactor(Endpoint endpoint) {
+        final LoadBalancerProvider current = this.snapshot;
+        return current instanceof FailOverLoadBalancer ? ((FailOverLoadBalancer) current).getSlowStartFactor(endpoint) : 1;
+    }
+
+    @Override
+    public void take(String url) {
+        final LoadBalancerProvider current = this.snapshot;
+        if (current instanceof FailOverLoadBalancer) {
+            ((FailOverLoadBalancer) current).take(url);
+        }
+    }
+
+    @Override
+    public String fail(String callUrl, long timeout) {
+        final LoadBalancerProvider current = this.snapshot;
+        return current instanceof FailOverLoadBalancer ? ((FailOverLoadBalancer) current).fail(callUrl, timeout) : null;
+    }
+
+    @Override
+    public void ok(String callUrl) {
+        final LoadBalancerProvider current = this.snapshot;
+        if (current instanceof FailOverLoadBalancer) {
+            ((FailOverLoadBalancer) current).ok(callUrl);
+        }
+    }
+
+}
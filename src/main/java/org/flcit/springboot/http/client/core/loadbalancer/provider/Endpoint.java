@@ -0,0 +1,135 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Configured url handed out by a load balancer: pass it back to fail / ok / release
+ * to skip the lookup of the called url.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class Endpoint {
+
+    private final String url;
+    private final double weight;
+    private final String zone;
+    private final Map<String, String> metadata;
+    final String scheme;
+    final String host;
+    final int port;
+    final String path;
+
+    /**
+     * @param url
+     * @return endpoint of weight 1 without zone
+     */
+    public static Endpoint of(String url) {
+        return new Endpoint(url, 1d, null);
+    }
+
+    Endpoint(String url, double weight, String zone) {
+        this(url, weight, zone, null);
+    }
+
+    Endpoint(String url, double weight, String zone, Map<String, String> metadata) {
+        this.url = url;
+        this.weight = weight;
+        this.zone = zone;
+        this.metadata = metadata != null && !metadata.isEmpty() ? Collections.unmodifiableMap(metadata) : Collections.emptyMap();
+        URI uri;
+        try {
+            uri = url != null ? URI.create(url) : null;
+        } catch (IllegalArgumentException e) {
+            uri = null;
+        }
+        if (uri != null && uri.getScheme() != null && uri.getHost() != null) {
+            this.scheme = uri.getScheme();
+            this.host = uri.getHost().toLowerCase(Locale.ROOT);
+            this.port = getPort(this.scheme, uri.getPort());
+            this.path = uri.getRawPath() != null ? uri.getRawPath() : "";
+        } else {
+            this.scheme = null;
+            this.host = null;
+            this.port = -1;
+            this.path = null;
+        }
+    }
+
+    /**
+     * @return
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return
+     */
+    public String getZone() {
+        return zone;
+    }
+
+    /**
+     * @return metadata given by the discovery (empty when none)
+     */
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    boolean sameAs(Endpoint other) {
+        return other != null && Objects.equals(url, other.url) && weight == other.weight
+                && Objects.equals(zone, other.zone) && metadata.equals(other.metadata);
+    }
+
+    boolean matches(URI uri) {
+        final String rawPath = uri.getRawPath();
+        return host.equalsIgnoreCase(uri.getHost())
+                && scheme.equalsIgnoreCase(uri.getScheme())
+                && port == getPort(uri.getScheme(), uri.getPort())
+                && (rawPath != null ? rawPath.startsWith(path) : path.isEmpty());
+    }
+
+    private static int getPort(String scheme, int port) {
+        if (port != -1) {
+            return port;
+        }
+        if ("http".equalsIgnoreCase(scheme)) {
+            return 80;
+        }
+        return "https".equalsIgnoreCase(scheme) ? 443 : -1;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reverse lookup of a called url, built once: hash table on the host (scheme and port checked on match),
+ * urls sharing a host are chained longest path first so the first match is the longest prefix.
+ * Urls without a host fall back to a longest prefix scan.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class EndpointIndex {
+
+    private static final Endpoint[] EMPTY = new Endpoint[0];
+
+    private final Entry[] table;
+    private final int mask;
+    private final Endpoint[] others;
+
+    EndpointIndex(Endpoint[] endpoints) {
+        // NULL URLS ARE NEVER MATCHED
+        final Endpoint[] sorted = Arrays.stream(endpoints).filter(endpoint -> endpoint.getUrl() != null).toArray(Endpoint[]::new);
+        Arrays.sort(sorted, Comparator.comparingInt((Endpoint endpoint) -> endpoint.getUrl().length()));
+        int size = 2;
+        while (size < sorted.length * 2) {
+            size <<= 1;
+        }
+        this.table = new Entry[size];
+        this.mask = size - 1;
+        final List<Endpoint> list = new ArrayList<>();
+        for (Endpoint endpoint : sorted) {
+            if (endpoint.host == null) {
+                list.add(0, endpoint);
+            } else {
+                final int hash = hash(endpoint.host, 0, endpoint.host.length());
+                table[hash & mask] = new Entry(hash, endpoint, table[hash & mask]);
+            }
+        }
+        this.others = list.isEmpty() ? EMPTY : list.toArray(EMPTY);
+    }
+
+    Endpoint get(String callUrl) {
+        if (callUrl == null) {
+            return null;
+        }
+        final int start = callUrl.indexOf("://");
+        if (start != -1) {
+            final int hostStart = start + 3;
+            final int hash = hash(callUrl, hostStart, getHostEnd(callUrl, hostStart));
+            for (Entry entry = table[hash & mask]; entry != null; entry = entry.next) {
+                if (entry.hash == hash && callUrl.startsWith(entry.endpoint.getUrl())) {
+                    return entry.endpoint;
+                }
+            }
+        }
+        return scan(callUrl);
+    }
+
+    Endpoint get(URI callUrl) {
+        if (callUrl == null) {
+            return null;
+        }
+        final String host = callUrl.getHost();
+        if (host != null) {
+            final int hash = hash(host, 0, host.length());
+            for (Entry entry = table[hash & mask]; entry != null; entry = entry.next) {
+                if (entry.hash == hash && entry.endpoint.matches(callUrl)) {
+                    return entry.endpoint;
+                }
+            }
+        }
+        return others.length == 0 ? null : scan(callUrl.toString());
+    }
+
+    private Endpoint scan(String callUrl) {
+        for (Endpoint endpoint : others) {
+            if (callUrl.startsWith(endpoint.getUrl())) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private static int getHostEnd(String url, int start) {
+        if (start < url.length() && url.charAt(start) == '[') {
+            final int end = url.indexOf(']', start);
+            return end == -1 ? url.length() : end + 1;
+        }
+        for (int i = start; i < url.length(); i++) {
+            final char c = url.charAt(i);
+            if (c == ':' || c == '/' || c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return url.length();
+    }
+
+    private static int hash(String value, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(value.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Entry {
+
+        private final int hash;
+        private final Endpoint endpoint;
+        private final Entry next;
+
+        private Entry(int hash, Endpoint endpoint, Entry next) {
+            this.hash = hash;
+            this.endpoint = endpoint;
+            this.next = next;
+        }
+
+    }
+
+}
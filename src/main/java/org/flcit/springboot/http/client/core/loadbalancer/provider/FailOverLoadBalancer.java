@@ -23,6 +23,53 @@ package org.flcit.springboot.http.client.core.loadbalancer.provider;
  */
 public interface FailOverLoadBalancer {
 
+    /**
+     * @param endpoint
+     */
+    public default void take(Endpoint endpoint) {
+        take(endpoint.getUrl());
+    }
+    /**
+     * @param endpoint
+     * @param timeout
+     * @return
+     */
+    public default Endpoint fail(Endpoint endpoint, long timeout) {
+        fail(endpoint.getUrl(), timeout);
+        return endpoint;
+    }
+    /**
+     * Ejects the endpoint at once (its circuit is opened), ex: 503 with Retry-After.
+     * @param endpoint
+     * @param timeout milliseconds
+     * @return
+     */
+    public default Endpoint eject(Endpoint endpoint, long timeout) {
+        return fail(endpoint, timeout);
+    }
+    /**
+     * Reduces the share of the endpoint without ejecting it, ex: 429.
+     * @param endpoint
+     * @param duration milliseconds
+     */
+    public default void throttle(Endpoint endpoint, long duration) {
+        fail(endpoint, duration);
+    }
+    /**
+     * @param endpoint
+     * @param duration call duration in nanoseconds
+     */
+    public default void ok(Endpoint endpoint, long duration) {
+        ok(endpoint.getUrl());
+    }
+    /**
+     * @param endpoint
+     * @return share of its weight the endpoint may receive (slow start after a re-admission, throttle), 1 once warmed up
+     */
+    public default double getSlowStartFactor(Endpoint endpoint) {
+        return 1d;
+    }
+
     /**
      * @param url
      */
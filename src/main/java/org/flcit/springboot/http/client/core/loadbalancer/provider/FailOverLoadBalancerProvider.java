@@ -16,35 +16,51 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer.provider;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-import org.springframework.util.CollectionUtils;
-import org.springframework.util.ObjectUtils;
-import org.springframework.util.StringUtils;
-
-import org.flcit.commons.core.util.ArrayUtils;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.OutlierDetectionConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.SlowStartConfiguration;
 
 /**
+ * Fail over state is a single immutable snapshot swapped through an {@link AtomicReference}:
+ * {@link #getUrls()} is a volatile read (plus a clock read while an url is ejected) without allocation.
+ * Ejection is decided by a {@link CircuitBreaker} per endpoint (first failure when no configuration is given).
+ * With an active health probe, ejected endpoints are only re-admitted by the {@link HealthProber}, never by user traffic.
+ * Latency outliers may be ejected too (see {@link OutlierDetector}), never more than the max ejection percentage of the endpoints.
+ * A re-admitted endpoint may be slow started: its weight factor ramps from the minimum weight to 1 over the window.
  * 
  * @since 
  * @author Florian Lestic
  */
 public class FailOverLoadBalancerProvider extends BaseLoadBalancerProvider implements FailOverLoadBalancer {
 
-    String[] currentUrls;
-    String[] retryFailedUrls;
-    Map<String, Long> failedUrls;
+    private static final Endpoint[] EMPTY = new Endpoint[0];
+    private static final long[] EMPTY_EXPIRIES = new long[0];
+
+    private final State healthy;
+    private final AtomicReference<State> state;
+    private final Map<Endpoint, CircuitBreaker> circuitBreakers;
+    private final long ejectionTimeout;
+    private final boolean probed;
+    private final long slowStartWindow;
+    private final double slowStartMinWeight;
+    private final double slowStartExponent;
+    private final AtomicReference<Warming> warming = new AtomicReference<>();
+    private final AtomicReference<Throttling> throttling = new AtomicReference<>();
+    private final double throttleWeight;
+    private final OutlierDetector outlierDetector;
+    private final double maxEjectionPercent;
 
     /**
      * @param urls
      */
     public FailOverLoadBalancerProvider(String[] urls) {
-        super(urls);
-        this.currentUrls = super.getUrls();
+        this(urls, null, null);
     }
 
     /**
@@ -52,114 +68,544 @@ public class FailOverLoadBalancerProvider extends BaseLoadBalancerProvider imple
      * @param weights
      */
     public FailOverLoadBalancerProvider(String[] urls, int[] weights) {
-        super(urls, weights);
-        this.currentUrls = super.getUrls();
+        this(urls, weights != null ? Arrays.stream(weights).asDoubleStream().toArray() : null, (FailOverConfiguration) null);
     }
 
-    @Override
-    public String[] getUrls() {
-        if (failedUrls == null
-                && retryFailedUrls == null) {
-            return super.getUrls();
+    /**
+     * @param urls
+     * @param weights
+     * @param failOver
+     */
+    public FailOverLoadBalancerProvider(String[] urls, double[] weights, FailOverConfiguration failOver) {
+        this(urls, weights, null, failOver);
+    }
+
+    /**
+     * @param urls
+     * @param weights
+     * @param zones zone of each url (zone aware load balancing)
+     * @param failOver
+     */
+    public FailOverLoadBalancerProvider(String[] urls, double[] weights, String[] zones, FailOverConfiguration failOver) {
+        this(getEndpoints(urls, weights, zones), failOver);
+    }
+
+    FailOverLoadBalancerProvider(Endpoint[] endpoints, FailOverConfiguration failOver) {
+        super(endpoints);
+        this.healthy = new State(super.getEndpoints(), super.getUrls());
+        this.state = new AtomicReference<>(this.healthy);
+        this.circuitBreakers = new HashMap<>();
+        for (Endpoint endpoint : super.getEndpoints()) {
+            this.circuitBreakers.computeIfAbsent(endpoint, k -> failOver != null && failOver.getCircuitBreaker() != null
+                    ? new CircuitBreaker(failOver.getCircuitBreaker())
+                    : new CircuitBreaker());
         }
-        synchronized (this) {
-            return this.currentUrls == null || (this.retryFailedUrls == null && this.failedUrls == null) ? super.getUrls() : StringUtils.concatenateStringArrays(this.currentUrls, getFailedExpiredUrls());
+        this.ejectionTimeout = failOver != null ? failOver.getTimeout() : 60000;
+        this.probed = failOver != null && failOver.getHealthProbe() != null && failOver.getHealthProbe().isActive();
+        final SlowStartConfiguration slowStart = failOver != null ? failOver.getSlowStart() : null;
+        this.slowStartWindow = slowStart != null ? TimeUnit.MILLISECONDS.toNanos(slowStart.getWindow()) : 0;
+        this.slowStartMinWeight = slowStart != null ? slowStart.getMinWeight() : 1;
+        this.slowStartExponent = slowStart != null && slowStart.getAggression() > 0 ? 1 / slowStart.getAggression() : 1;
+        this.throttleWeight = failOver != null ? failOver.getThrottleWeight() : 0.1;
+        final OutlierDetectionConfiguration outlierDetection = failOver != null ? failOver.getOutlierDetection() : null;
+        this.outlierDetector = outlierDetection != null && outlierDetection.isActive() ? new OutlierDetector(super.getEndpoints(), outlierDetection) : null;
+        this.maxEjectionPercent = outlierDetection != null ? outlierDetection.getMaxEjectionPercent() : 0;
+        if (this.probed) {
+            new HealthProber(this, failOver.getHealthProbe()).start();
         }
     }
 
     @Override
-    public final String fail(final String callUrl, long timeout) {
-        final String url = getInstance(callUrl);
-        synchronized (this) {
-            if (this.failedUrls == null) {
-                this.failedUrls = new HashMap<>(1);
+    public String[] getUrls() {
+        return getState().urls;
+    }
+
+    @Override
+    public Endpoint[] getEndpoints() {
+        return getState().endpoints;
+    }
+
+    private State getState() {
+        State current = this.state.get();
+        while (current.nextExpiry != Long.MAX_VALUE) {
+            final long now = System.currentTimeMillis();
+            if (current.nextExpiry > now) {
+                break;
             }
-            this.failedUrls.put(url, System.currentTimeMillis() + timeout);
-            if (this.retryFailedUrls != null) {
-                this.retryFailedUrls = ArrayUtils.remove(this.retryFailedUrls, url);
+            final State next = current.refresh(super.getEndpoints(), now, probed);
+            if (this.state.compareAndSet(current, next)) {
+                return next;
             }
-            this.currentUrls = ArrayUtils.remove(this.currentUrls, url);
-            if (ObjectUtils.isEmpty(this.currentUrls)) {
-                reset();
+            current = this.state.get();
+        }
+        return current;
+    }
+
+    @Override
+    public final String fail(final String callUrl, long timeout) {
+        final Endpoint endpoint = fail(getEndpoint(callUrl), timeout);
+        return endpoint != null ? endpoint.getUrl() : null;
+    }
+
+    @Override
+    public Endpoint fail(final Endpoint handle, long timeout) {
+        final Endpoint endpoint = own(handle);
+        final CircuitBreaker circuitBreaker = endpoint != null ? circuitBreakers.get(endpoint) : null;
+        if (circuitBreaker == null) {
+            return null;
+        }
+        if (circuitBreaker.onFailure(System.nanoTime())) {
+            markFailed(endpoint, timeout);
+        }
+        return endpoint;
+    }
+
+    @Override
+    public Endpoint eject(final Endpoint handle, long timeout) {
+        final Endpoint endpoint = own(handle);
+        final CircuitBreaker circuitBreaker = endpoint != null ? circuitBreakers.get(endpoint) : null;
+        if (circuitBreaker == null) {
+            return null;
+        }
+        circuitBreaker.trip();
+        markFailed(endpoint, timeout);
+        return endpoint;
+    }
+
+    @Override
+    public void throttle(final Endpoint handle, long duration) {
+        final Endpoint endpoint = own(handle);
+        if (endpoint == null || !circuitBreakers.containsKey(endpoint)) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long nanos = TimeUnit.MILLISECONDS.toNanos(duration);
+        Throttling current;
+        do {
+            current = this.throttling.get();
+        } while (!this.throttling.compareAndSet(current, new Throttling(current, endpoint, now, now + nanos)));
+    }
+
+    private void markFailed(final Endpoint endpoint, long timeout) {
+        State current;
+        State next;
+        do {
+            current = this.state.get();
+            final long now = System.currentTimeMillis();
+            final int index = indexOf(current.failed, endpoint);
+            final Endpoint[] failed = index == -1 ? append(current.failed, endpoint) : current.failed;
+            final long[] failedExpiries = Arrays.copyOf(current.failedExpiries, failed.length);
+            failedExpiries[index == -1 ? failed.length - 1 : index] = now + timeout;
+            next = new State(super.getEndpoints(), failed, failedExpiries, remove(current.retry, endpoint), now, probed);
+            if (next.isAllFailed()) {
+                next = this.healthy;
             }
+        } while (!this.state.compareAndSet(current, next));
+        if (next == this.healthy) {
+            circuitBreakers.values().forEach(CircuitBreaker::reset);
         }
-        return url;
     }
 
     @Override
     public void ok(String callUrl) {
-        if (this.retryFailedUrls == null) {
+        ok(getEndpoint(callUrl), -1);
+    }
+
+    @Override
+    public void ok(final Endpoint handle, long duration) {
+        final Endpoint endpoint = own(handle);
+        final CircuitBreaker circuitBreaker = endpoint != null ? circuitBreakers.get(endpoint) : null;
+        if (circuitBreaker == null) {
             return;
         }
-        final String url = getInstance(callUrl);
-        if (url == null || !ObjectUtils.containsElement(this.retryFailedUrls, url)) {
+        final long now = System.nanoTime();
+        final int result = circuitBreaker.onSuccess(duration, now);
+        if (result == CircuitBreaker.OPEN) {
+            markFailed(endpoint, this.ejectionTimeout);
+        } else if (result == CircuitBreaker.CLOSED) {
+            readmit(endpoint);
+        }
+        if (outlierDetector != null && duration >= 0 && outlierDetector.record(endpoint, duration, now)) {
+            ejectOutliers();
+        }
+    }
+
+    private void ejectOutliers() {
+        final int total = circuitBreakers.size();
+        for (Endpoint outlier : outlierDetector.evaluate()) {
+            final State current = this.state.get();
+            if (indexOf(current.failed, outlier) != -1 || indexOf(current.retry, outlier) != -1) {
+                continue;
+            }
+            if ((current.failed.length + current.retry.length + 1) * 100d > maxEjectionPercent * total) {
+                return;
+            }
+            circuitBreakers.get(outlier).trip();
+            markFailed(outlier, this.ejectionTimeout);
+        }
+    }
+
+    private void readmit(final Endpoint endpoint) {
+        State current;
+        State next;
+        do {
+            current = this.state.get();
+            if (indexOf(current.retry, endpoint) == -1 && indexOf(current.failed, endpoint) == -1) {
+                return;
+            }
+            next = removeFailed(current, endpoint, remove(current.retry, endpoint));
+        } while (!this.state.compareAndSet(current, next));
+        if (slowStartWindow > 0) {
+            warmUp(endpoint);
+        }
+    }
+
+    private void warmUp(final Endpoint endpoint) {
+        Warming current;
+        do {
+            current = this.warming.get();
+        } while (!this.warming.compareAndSet(current, new Warming(current, endpoint, System.nanoTime(), slowStartWindow)));
+    }
+
+    @Override
+    public double getSlowStartFactor(Endpoint endpoint) {
+        final Throttling throttled = this.throttling.get();
+        final double factor = throttled != null ? getThrottleFactor(throttled, endpoint) : 1;
+        final Warming current = this.warming.get();
+        if (current == null) {
+            return factor;
+        }
+        return Math.min(factor, getWarmingFactor(current, endpoint));
+    }
+
+    private double getThrottleFactor(final Throttling current, final Endpoint endpoint) {
+        final long now = System.nanoTime();
+        if (now - current.end >= 0) {
+            this.throttling.compareAndSet(current, null);
+            return 1;
+        }
+        final int index = indexOf(current.endpoints, endpoint);
+        return index != -1 && now - current.ends[index] < 0 ? throttleWeight : 1;
+    }
+
+    private double getWarmingFactor(final Warming current, final Endpoint endpoint) {
+        final long now = System.nanoTime();
+        if (now - current.end >= 0) {
+            this.warming.compareAndSet(current, null);
+            return 1;
+        }
+        final int index = indexOf(current.endpoints, endpoint);
+        if (index == -1) {
+            return 1;
+        }
+        final double elapsed = (double) (now - current.starts[index]) / slowStartWindow;
+        return elapsed >= 1 ? 1 : Math.max(slowStartMinWeight, Math.pow(elapsed, slowStartExponent));
+    }
+
+    @Override
+    public void take(String url) {
+        if (this.state.get().failed.length != 0) {
+            take(getEndpoint(url));
+        }
+    }
+
+    @Override
+    public void take(Endpoint endpoint) {
+        State current = this.state.get();
+        final int index = endpoint != null && !probed ? indexOf(current.failed, endpoint) : -1;
+        if (index == -1 || current.failedExpiries[index] > System.currentTimeMillis()
+                || !circuitBreakers.get(endpoint).onProbe()) {
             return;
         }
-        synchronized (this) {
-            this.retryFailedUrls = ArrayUtils.remove(this.retryFailedUrls, url);
-            this.failedUrls.remove(url);
-            this.currentUrls = ObjectUtils.addObjectToArray(this.currentUrls, url);
-            checkNoFailedUrls();
+        State next;
+        do {
+            current = this.state.get();
+            if (indexOf(current.failed, endpoint) == -1) {
+                return;
+            }
+            next = removeFailed(current, endpoint, append(current.retry, endpoint));
+        } while (!this.state.compareAndSet(current, next));
+    }
+
+    private Endpoint own(final Endpoint endpoint) {
+        return endpoint == null || circuitBreakers.containsKey(endpoint) ? endpoint : getEndpoint(endpoint);
+    }
+
+    /**
+     * Hot reconfiguration: takes over the circuit breakers, ejections and slow starts of the urls kept from the previous provider.
+     * Must be called before this provider is published.
+     * 
+     * @param previous
+     */
+    public void carryOver(FailOverLoadBalancerProvider previous) {
+        for (Map.Entry<Endpoint, CircuitBreaker> entry : previous.circuitBreakers.entrySet()) {
+            final Endpoint endpoint = getEndpoint(entry.getKey());
+            if (endpoint != null) {
+                circuitBreakers.put(endpoint, entry.getValue());
+            }
+        }
+        final State old = previous.state.get();
+        Endpoint[] failed = EMPTY;
+        long[] failedExpiries = EMPTY_EXPIRIES;
+        for (int i = 0; i < old.failed.length; i++) {
+            final Endpoint endpoint = getEndpoint(old.failed[i]);
+            if (endpoint != null && indexOf(failed, endpoint) == -1) {
+                failed = append(failed, endpoint);
+                failedExpiries = Arrays.copyOf(failedExpiries, failed.length);
+                failedExpiries[failed.length - 1] = old.failedExpiries[i];
+            }
+        }
+        Endpoint[] retry = EMPTY;
+        for (Endpoint value : old.retry) {
+            final Endpoint endpoint = getEndpoint(value);
+            if (endpoint != null && indexOf(retry, endpoint) == -1 && indexOf(failed, endpoint) == -1) {
+                retry = append(retry, endpoint);
+            }
+        }
+        if (failed.length != 0 || retry.length != 0) {
+            final State next = new State(super.getEndpoints(), failed, failedExpiries, retry, System.currentTimeMillis(), probed);
+            this.state.set(next.isAllFailed() ? this.healthy : next);
+        }
+        final Warming warmingUp = previous.warming.get();
+        if (warmingUp != null) {
+            this.warming.set(warmingUp.carryOver(this));
+        }
+        final Throttling throttled = previous.throttling.get();
+        if (throttled != null) {
+            this.throttling.set(throttled.carryOver(this));
         }
     }
 
-    private String getInstance(String callUrl) {
-        if (callUrl == null) {
-            return null;
+    Endpoint[] getProbeCandidates(long now) {
+        final State current = this.state.get();
+        int size = 0;
+        final Endpoint[] res = new Endpoint[current.failed.length];
+        for (int i = 0; i < current.failed.length; i++) {
+            if (current.failedExpiries[i] <= now) {
+                res[size++] = current.failed[i];
+            }
         }
-        String res = null;
-        for (String url : super.getUrls()) {
-            if (callUrl.startsWith(url)
-                    && (res == null || res.length() < url.length())) {
-                res = url;
+        return size == res.length ? res : Arrays.copyOf(res, size);
+    }
+
+    void probed(Endpoint endpoint, boolean healthy) {
+        if (healthy) {
+            circuitBreakers.get(endpoint).reset();
+            readmit(endpoint);
+        }
+    }
+
+    private State removeFailed(final State current, final Endpoint endpoint, final Endpoint[] retry) {
+        final int index = indexOf(current.failed, endpoint);
+        final Endpoint[] failed = index == -1 ? current.failed : remove(current.failed, index);
+        final long[] failedExpiries = index == -1 ? current.failedExpiries : remove(current.failedExpiries, index);
+        return failed.length == 0 && retry.length == 0 ? this.healthy
+                : new State(super.getEndpoints(), failed, failedExpiries, retry, System.currentTimeMillis(), probed);
+    }
+
+    private static int indexOf(final Endpoint[] values, final Endpoint value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
             }
         }
+        return -1;
+    }
+
+    private static Endpoint[] append(final Endpoint[] values, final Endpoint value) {
+        final Endpoint[] res = Arrays.copyOf(values, values.length + 1);
+        res[values.length] = value;
         return res;
     }
 
-    private final boolean checkNoFailedUrls() {
-        if (CollectionUtils.isEmpty(failedUrls)
-                && ObjectUtils.isEmpty(retryFailedUrls)) {
-            reset();
-            return true;
+    private static Endpoint[] remove(final Endpoint[] values, final Endpoint value) {
+        final int index = indexOf(values, value);
+        return index == -1 ? values : remove(values, index);
+    }
+
+    private static Endpoint[] remove(final Endpoint[] values, final int index) {
+        final Endpoint[] res = new Endpoint[values.length - 1];
+        System.arraycopy(values, 0, res, 0, index);
+        System.arraycopy(values, index + 1, res, index, res.length - index);
+        return res;
+    }
+
+    private static long[] remove(final long[] values, final int index) {
+        final long[] res = new long[values.length - 1];
+        System.arraycopy(values, 0, res, 0, index);
+        System.arraycopy(values, index + 1, res, index, res.length - index);
+        return res;
+    }
+
+    private static String[] getUrls(final Endpoint[] endpoints) {
+        final String[] res = new String[endpoints.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            res[i] = endpoints[i].getUrl();
         }
-        return false;
+        return res;
     }
 
-    private final String[] getFailedExpiredUrls() {
-        List<String> expired = null;
-        for (Entry<String, Long> entry : this.failedUrls.entrySet()) {
-            if (expired(entry.getValue())) {
-                if (expired == null) {
-                    expired = new ArrayList<>(1);
+    /**
+     * Immutable snapshot of the endpoints under slow start with their re-admission time.
+     */
+    private static final class Warming {
+
+        private final Endpoint[] endpoints;
+        private final long[] starts;
+        private final long end;
+
+        private Warming(Warming previous, Endpoint endpoint, long now, long window) {
+            final int size = previous != null ? previous.endpoints.length : 0;
+            final Endpoint[] values = new Endpoint[size + 1];
+            final long[] times = new long[size + 1];
+            int index = 0;
+            for (int i = 0; i < size; i++) {
+                if (previous.endpoints[i] != endpoint && now - previous.starts[i] < window) {
+                    values[index] = previous.endpoints[i];
+                    times[index++] = previous.starts[i];
                 }
-                expired.add(entry.getKey());
             }
+            values[index] = endpoint;
+            times[index++] = now;
+            this.endpoints = index == values.length ? values : Arrays.copyOf(values, index);
+            this.starts = index == times.length ? times : Arrays.copyOf(times, index);
+            this.end = now + window;
+        }
+
+        private Warming(Endpoint[] endpoints, long[] starts, long end) {
+            this.endpoints = endpoints;
+            this.starts = starts;
+            this.end = end;
+        }
+
+        private Warming carryOver(LoadBalancerProvider provider) {
+            final Endpoint[] values = new Endpoint[endpoints.length];
+            final long[] times = new long[endpoints.length];
+            int index = 0;
+            for (int i = 0; i < endpoints.length; i++) {
+                final Endpoint endpoint = provider.getEndpoint(endpoints[i]);
+                if (endpoint != null) {
+                    values[index] = endpoint;
+                    times[index++] = starts[i];
+                }
+            }
+            return index == 0 ? null : new Warming(Arrays.copyOf(values, index), Arrays.copyOf(times, index), end);
         }
-        return org.flcit.commons.core.util.CollectionUtils.toArray(expired);
-    }
 
-    private final void reset() {
-        this.retryFailedUrls = null;
-        this.failedUrls = null;
-        this.currentUrls = super.getUrls();
     }
 
-    private static final boolean expired(Long timeMillis) {
-        return timeMillis == null || timeMillis < System.currentTimeMillis();
+    /**
+     * Immutable snapshot of the endpoints throttled (429) with the end of their throttle.
+     */
+    private static final class Throttling {
+
+        private final Endpoint[] endpoints;
+        private final long[] ends;
+        private final long end;
+
+        private Throttling(Throttling previous, Endpoint endpoint, long now, long until) {
+            final int size = previous != null ? previous.endpoints.length : 0;
+            final Endpoint[] values = new Endpoint[size + 1];
+            final long[] times = new long[size + 1];
+            int index = 0;
+            long last = until;
+            for (int i = 0; i < size; i++) {
+                if (previous.endpoints[i] != endpoint && now - previous.ends[i] < 0) {
+                    values[index] = previous.endpoints[i];
+                    times[index++] = previous.ends[i];
+                    last = Math.max(last, previous.ends[i]);
+                }
+            }
+            values[index] = endpoint;
+            times[index++] = until;
+            this.endpoints = index == values.length ? values : Arrays.copyOf(values, index);
+            this.ends = index == times.length ? times : Arrays.copyOf(times, index);
+            this.end = last;
+        }
+
+        private Throttling(Endpoint[] endpoints, long[] ends, long end) {
+            this.endpoints = endpoints;
+            this.ends = ends;
+            this.end = end;
+        }
+
+        private Throttling carryOver(LoadBalancerProvider provider) {
+            final Endpoint[] values = new Endpoint[endpoints.length];
+            final long[] times = new long[endpoints.length];
+            int index = 0;
+            for (int i = 0; i < endpoints.length; i++) {
+                final Endpoint endpoint = provider.getEndpoint(endpoints[i]);
+                if (endpoint != null) {
+                    values[index] = endpoint;
+                    times[index++] = ends[i];
+                }
+            }
+            return index == 0 ? null : new Throttling(Arrays.copyOf(values, index), Arrays.copyOf(times, index), end);
+        }
+
     }
 
-    @Override
-    public void take(String url) {
-        if (failedUrls == null
-                || !failedUrls.containsKey(url)) {
-            return;
+    /**
+     * Immutable snapshot: available endpoints (healthy + ejected ones whose timeout expired),
+     * ejected endpoints with their expiry, endpoints under retry and the next expiry to watch.
+     */
+    private static final class State {
+
+        private final Endpoint[] endpoints;
+        private final String[] urls;
+        private final Endpoint[] failed;
+        private final long[] failedExpiries;
+        private final Endpoint[] retry;
+        private final long nextExpiry;
+        private final boolean allFailed;
+
+        private State(Endpoint[] endpoints, String[] urls) {
+            this.endpoints = endpoints;
+            this.urls = urls;
+            this.failed = EMPTY;
+            this.failedExpiries = EMPTY_EXPIRIES;
+            this.retry = EMPTY;
+            this.nextExpiry = Long.MAX_VALUE;
+            this.allFailed = false;
         }
-        synchronized (this) {
-            if (this.failedUrls.remove(url) != null) {
-                this.retryFailedUrls = ObjectUtils.addObjectToArray(this.retryFailedUrls, url);
+
+        private State(Endpoint[] all, Endpoint[] failed, long[] failedExpiries, Endpoint[] retry, long now, boolean probed) {
+            this.failed = failed;
+            this.failedExpiries = failedExpiries;
+            this.retry = retry;
+            final Endpoint[] available = new Endpoint[all.length];
+            int size = 0;
+            int healthy = 0;
+            long next = Long.MAX_VALUE;
+            for (Endpoint endpoint : all) {
+                if (indexOf(retry, endpoint) != -1) {
+                    continue;
+                }
+                final int index = indexOf(failed, endpoint);
+                if (index == -1) {
+                    healthy++;
+                } else if (probed) {
+                    continue;
+                } else if (failedExpiries[index] > now) {
+                    next = Math.min(next, failedExpiries[index]);
+                    continue;
+                }
+                available[size++] = endpoint;
             }
+            this.endpoints = size == all.length ? all : Arrays.copyOf(available, size);
+            this.urls = getUrls(this.endpoints);
+            this.nextExpiry = next;
+            this.allFailed = healthy == 0;
         }
+
+        private State refresh(Endpoint[] all, long now, boolean probed) {
+            return new State(all, failed, failedExpiries, retry, now, probed);
+        }
+
+        private boolean isAllFailed() {
+            return allFailed;
+        }
+
     }
 
 }
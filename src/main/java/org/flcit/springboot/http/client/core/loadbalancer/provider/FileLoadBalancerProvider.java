@@ -0,0 +1,192 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+
+/**
+ * Endpoints read from a JSON or YAML file (by extension), either a list or an object with an {@code endpoints} list,
+ * each item being an url or an object {@code url, weight, zone, metadata}.
+ * The directory of the file is watched by a daemon thread (symbolic link swaps included): changes are debounced,
+ * then the file is read again and a new snapshot is published when the endpoints changed (an invalid file keeps the previous one). Stops on {@link #close()} or once garbage collected.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class FileLoadBalancerProvider extends DynamicLoadBalancerProvider {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileLoadBalancerProvider.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final CustomizableThreadFactory THREAD_FACTORY = new CustomizableThreadFactory("load-balancer-file-");
+
+    static {
+        THREAD_FACTORY.setDaemon(true);
+    }
+
+    private final Path file;
+    private final WatchService watchService;
+
+    /**
+     * @param file
+     * @param debounce milliseconds
+     * @param failOver null or inactive for no fail over
+     */
+    public FileLoadBalancerProvider(Path file, long debounce, FailOverConfiguration failOver) {
+        super(failOver);
+        this.file = file.toAbsolutePath();
+        publish(read(this.file));
+        try {
+            this.watchService = this.file.getFileSystem().newWatchService();
+            this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        THREAD_FACTORY.newThread(new Watcher(this, watchService, TimeUnit.MILLISECONDS.toNanos(Math.max(0, debounce)))).start();
+    }
+
+    void reload() {
+        try {
+            publish(read(file));
+        } catch (RuntimeException e) {
+            LOG.warn("Load balancer file {} ignored", file, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    static Endpoint[] read(Path file) {
+        final Object root;
+        try (InputStream in = Files.newInputStream(file)) {
+            final String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            root = name.endsWith(".yml") || name.endsWith(".yaml") ? new Yaml(new SafeConstructor()).load(in) : MAPPER.readValue(in, Object.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final Object items = root instanceof Map ? ((Map<?, ?>) root).get("endpoints") : root;
+        if (!(items instanceof List)) {
+            throw new IllegalArgumentException("No endpoints list in " + file);
+        }
+        final List<?> values = (List<?>) items;
+        final Endpoint[] res = new Endpoint[values.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = getEndpoint(values.get(i));
+        }
+        return res;
+    }
+
+    private static Endpoint getEndpoint(Object item) {
+        if (item instanceof String) {
+            return new Endpoint((String) item, 1d, null);
+        }
+        if (!(item instanceof Map) || !(((Map<?, ?>) item).get("url") instanceof String)) {
+            throw new IllegalArgumentException("Invalid endpoint " + item);
+        }
+        final Map<?, ?> values = (Map<?, ?>) item;
+        final Object weight = values.get("weight");
+        final Object zone = values.get("zone");
+        return new Endpoint((String) values.get("url"),
+                weight instanceof Number ? ((Number) weight).doubleValue() : 1d,
+                zone != null ? zone.toString() : null,
+                getMetadata(values.get("metadata")));
+    }
+
+    private static Map<String, String> getMetadata(Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        final Map<String, String> res = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            res.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        return res;
+    }
+
+    private static final class Watcher implements Runnable {
+
+        private static final long IDLE = TimeUnit.SECONDS.toNanos(10);
+
+        private final WeakReference<FileLoadBalancerProvider> provider;
+        private final WatchService watchService;
+        private final long debounce;
+
+        private Watcher(FileLoadBalancerProvider provider, WatchService watchService, long debounce) {
+            this.provider = new WeakReference<>(provider);
+            this.watchService = watchService;
+            this.debounce = debounce;
+        }
+
+        @Override
+        public void run() {
+            long deadline = 0;
+            try {
+                while (true) {
+                    final long now = System.nanoTime();
+                    final WatchKey key = watchService.poll(deadline != 0 ? Math.max(0, deadline - now) : IDLE, TimeUnit.NANOSECONDS);
+                    if (key != null) {
+                        if (!key.pollEvents().isEmpty()) {
+                            deadline = System.nanoTime() + debounce;
+                        }
+                        key.reset();
+                    }
+                    final FileLoadBalancerProvider current = provider.get();
+                    if (current == null) {
+                        watchService.close();
+                        return;
+                    }
+                    if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                        deadline = 0;
+                        current.reload();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ClosedWatchServiceException | IOException e) {
+                // STOPPED
+            }
+        }
+
+    }
+
+}
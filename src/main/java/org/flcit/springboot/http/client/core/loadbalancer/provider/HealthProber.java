@@ -0,0 +1,227 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.HealthProbeConfiguration;
+
+/**
+ * Probes the ejected endpoints of one {@link FailOverLoadBalancerProvider} whose timeout expired.
+ * Ticks run on a single scheduler thread shared by every provider, probes on a shared daemon pool
+ * (at most {@code concurrency} per provider). Stops by itself once the provider is garbage collected.
+ * Probes go through the client of the configuration when set (SSL, proxy and timeouts of the load balanced client),
+ * through a shared default client otherwise.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class HealthProber implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HealthProber.class);
+
+    private final WeakReference<FailOverLoadBalancerProvider> provider;
+    private final HealthProbeConfiguration configuration;
+    private final String path;
+    private final boolean absolute;
+    private final String responseText;
+    private final Map<String, String> responseFields;
+    private final long interval;
+    private final long jitter;
+    private final Semaphore permits;
+    private final RequestConfig requestConfig;
+    private final Set<Endpoint> probing = ConcurrentHashMap.newKeySet();
+
+    HealthProber(FailOverLoadBalancerProvider provider, HealthProbeConfiguration configuration) {
+        this.provider = new WeakReference<>(provider);
+        this.configuration = configuration;
+        this.path = getPath(configuration.getUrl());
+        this.absolute = StringUtils.hasLength(configuration.getUrl()) && URI.create(configuration.getUrl()).isAbsolute();
+        this.responseText = configuration.getResponseText();
+        this.responseFields = configuration.getResponseFields();
+        this.interval = Math.max(1, configuration.getInterval());
+        this.jitter = Math.max(0, Math.min(configuration.getJitter(), this.interval));
+        this.permits = new Semaphore(Math.max(1, configuration.getConcurrency()));
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout(configuration.getTimeout())
+                .setConnectionRequestTimeout(configuration.getTimeout())
+                .setSocketTimeout(configuration.getTimeout())
+                .build();
+    }
+
+    void start() {
+        schedule();
+    }
+
+    private void schedule() {
+        final long delay = jitter > 0 ? interval + ThreadLocalRandom.current().nextLong(-jitter, jitter + 1) : interval;
+        Shared.SCHEDULER.schedule(this, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        final FailOverLoadBalancerProvider current = this.provider.get();
+        if (current == null) {
+            return;
+        }
+        try {
+            for (Endpoint endpoint : current.getProbeCandidates(System.currentTimeMillis())) {
+                if (!probing.add(endpoint)) {
+                    continue;
+                }
+                if (!permits.tryAcquire()) {
+                    probing.remove(endpoint);
+                    break;
+                }
+                Shared.EXECUTOR.execute(() -> {
+                    try {
+                        current.probed(endpoint, probe(endpoint));
+                    } finally {
+                        probing.remove(endpoint);
+                        permits.release();
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Health probe scheduling failed", e);
+        } finally {
+            schedule();
+        }
+    }
+
+    boolean probe(Endpoint endpoint) {
+        final HttpClient client = configuration.getHttpClient();
+        try {
+            final HttpGet request = new HttpGet(getUrl(endpoint));
+            if (client == null) {
+                request.setConfig(requestConfig);
+            }
+            return (client != null ? client : Shared.CLIENT).execute(request, this::isHealthy);
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.debug("Health probe of {} failed", endpoint, e);
+            return false;
+        }
+    }
+
+    private boolean isHealthy(HttpResponse response) throws IOException {
+        final int status = response.getStatusLine().getStatusCode();
+        if (status < 200 || status >= 300) {
+            return false;
+        }
+        if (!StringUtils.hasLength(responseText) && CollectionUtils.isEmpty(responseFields)) {
+            return true;
+        }
+        final HttpEntity entity = response.getEntity();
+        return isHealthy(entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : "");
+    }
+
+    private boolean isHealthy(String body) throws IOException {
+        if (StringUtils.hasLength(responseText) && !body.contains(responseText)) {
+            return false;
+        }
+        if (!CollectionUtils.isEmpty(responseFields)) {
+            final JsonNode root = Shared.MAPPER.readTree(body);
+            for (Map.Entry<String, String> field : responseFields.entrySet()) {
+                final JsonNode node = root.at("/" + field.getKey().replace('.', '/'));
+                if (!node.isValueNode() || !node.asText().equals(field.getValue())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String getPath(String url) {
+        if (!StringUtils.hasLength(url)) {
+            return "";
+        }
+        final URI uri = URI.create(url);
+        if (!uri.isAbsolute()) {
+            return url;
+        }
+        return uri.getRawQuery() != null ? uri.getRawPath() + "?" + uri.getRawQuery() : uri.getRawPath();
+    }
+
+    private String getUrl(Endpoint endpoint) {
+        if (absolute && endpoint.host != null) {
+            return endpoint.scheme + "://" + endpoint.host + (endpoint.port != -1 ? ":" + endpoint.port : "") + path;
+        }
+        final String url = endpoint.getUrl();
+        if (path.isEmpty()) {
+            return url;
+        }
+        if (url.endsWith("/")) {
+            return path.startsWith("/") ? url + path.substring(1) : url + path;
+        }
+        return path.startsWith("/") ? url + path : url + "/" + path;
+    }
+
+    /**
+     * Lazily created on the first prober.
+     */
+    private static final class Shared {
+
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(daemon("load-balancer-health-"));
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(daemon("load-balancer-probe-"));
+        private static final CloseableHttpClient CLIENT = HttpClients.custom()
+                .disableAutomaticRetries()
+                .disableCookieManagement()
+                .setMaxConnPerRoute(4)
+                .setMaxConnTotal(64)
+                .build();
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+
+        private Shared() { }
+
+        private static CustomizableThreadFactory daemon(String prefix) {
+            final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+            threadFactory.setDaemon(true);
+            return threadFactory;
+        }
+
+    }
+
+}
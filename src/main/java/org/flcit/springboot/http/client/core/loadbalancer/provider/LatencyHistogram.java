@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Log-linear latency histogram in microseconds: 8 sub-buckets per power of two (12.5% precision),
+ * recording is a single atomic increment.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (40 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+
+    /**
+     * @param duration nanoseconds
+     */
+    void record(long duration) {
+        counts.incrementAndGet(index(duration / 1000));
+    }
+
+    /**
+     * Resets the histogram.
+     * 
+     * @param percentile
+     * @param minimumCalls
+     * @return the percentile (microseconds) of the calls recorded since the last drain, -1 under minimumCalls
+     */
+    long drain(double percentile, int minimumCalls) {
+        final int[] values = new int[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts.get(i) != 0) {
+                values[i] = counts.getAndSet(i, 0);
+                total += values[i];
+            }
+        }
+        if (total == 0 || total < minimumCalls) {
+            return -1;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += values[i];
+            if (count >= rank) {
+                return value(i);
+            }
+        }
+        return value(BUCKETS - 1);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        final int msb = 63 - Long.numberOfLeadingZeros(value);
+        final int index = (msb - SUB_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (msb - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long value(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int msb = index / SUB_BUCKETS + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (msb - SUB_BITS);
+    }
+
+}
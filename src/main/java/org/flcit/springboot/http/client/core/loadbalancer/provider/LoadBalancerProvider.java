@@ -16,6 +16,8 @@
 
 package org.flcit.springboot.http.client.core.loadbalancer.provider;
 
+import java.net.URI;
+
 /**
  * 
  * @since 
@@ -27,5 +29,47 @@ public interface LoadBalancerProvider {
      * @return
      */
     public String[] getUrls();
+    /**
+     * @return the available endpoints (same order as {@link #getUrls()}), by default one endpoint of weight 1 per url
+     */
+    public default Endpoint[] getEndpoints() {
+        return UrlEndpoints.of(this).endpoints;
+    }
+    /**
+     * @return every configured endpoint, available or not
+     */
+    public default Endpoint[] getAllEndpoints() {
+        return getEndpoints();
+    }
+    /**
+     * @param callUrl
+     * @return the configured endpoint matching the called url (longest prefix)
+     */
+    public default Endpoint getEndpoint(String callUrl) {
+        return UrlEndpoints.of(this).index.get(callUrl);
+    }
+    /**
+     * @param callUrl
+     * @return the configured endpoint matching the called url (longest prefix)
+     */
+    public default Endpoint getEndpoint(URI callUrl) {
+        return UrlEndpoints.of(this).index.get(callUrl);
+    }
+    /**
+     * @param endpoint handle, possibly obtained from a previous provider (hot reconfiguration)
+     * @return the configured endpoint with the same url, null when the url is no longer configured
+     */
+    public default Endpoint getEndpoint(Endpoint endpoint) {
+        final Endpoint res = endpoint != null ? getEndpoint(endpoint.getUrl()) : null;
+        return res != null && res.getUrl().equals(endpoint.getUrl()) ? res : null;
+    }
+    /**
+     * @param callUrl
+     * @return the configured url matching the called url (longest prefix)
+     */
+    public default String getInstance(String callUrl) {
+        final Endpoint endpoint = getEndpoint(callUrl);
+        return endpoint != null ? endpoint.getUrl() : null;
+    }
 
 }
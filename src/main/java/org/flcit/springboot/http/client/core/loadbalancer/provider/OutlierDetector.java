@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.OutlierDetectionConfiguration;
+
+/**
+ * Latency outlier detection: each endpoint records its call durations in a {@link LatencyHistogram};
+ * every interval, the percentile of each endpoint with enough calls is compared to the median of the endpoints
+ * and the ones above threshold times this median are reported, slowest first.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class OutlierDetector {
+
+    private static final Endpoint[] NONE = new Endpoint[0];
+
+    private final Map<Endpoint, LatencyHistogram> histograms;
+    private final long interval;
+    private final double percentile;
+    private final double threshold;
+    private final int minimumCalls;
+    private final AtomicLong nextEvaluation;
+
+    OutlierDetector(Endpoint[] endpoints, OutlierDetectionConfiguration configuration) {
+        this.histograms = new HashMap<>();
+        for (Endpoint endpoint : endpoints) {
+            this.histograms.computeIfAbsent(endpoint, k -> new LatencyHistogram());
+        }
+        this.interval = TimeUnit.MILLISECONDS.toNanos(configuration.getInterval());
+        this.percentile = configuration.getPercentile();
+        this.threshold = configuration.getThreshold();
+        this.minimumCalls = Math.max(1, configuration.getMinimumCalls());
+        this.nextEvaluation = new AtomicLong(System.nanoTime() + this.interval);
+    }
+
+    /**
+     * @param endpoint
+     * @param duration nanoseconds
+     * @param now
+     * @return true when the interval elapsed and the caller must run {@link #evaluate()}
+     */
+    boolean record(Endpoint endpoint, long duration, long now) {
+        final LatencyHistogram histogram = histograms.get(endpoint);
+        if (histogram != null) {
+            histogram.record(duration);
+        }
+        final long next = nextEvaluation.get();
+        return now - next >= 0 && nextEvaluation.compareAndSet(next, now + interval);
+    }
+
+    Endpoint[] evaluate() {
+        final Endpoint[] endpoints = new Endpoint[histograms.size()];
+        final long[] latencies = new long[endpoints.length];
+        int size = 0;
+        for (Map.Entry<Endpoint, LatencyHistogram> entry : histograms.entrySet()) {
+            final long latency = entry.getValue().drain(percentile, minimumCalls);
+            if (latency >= 0) {
+                endpoints[size] = entry.getKey();
+                latencies[size++] = latency;
+            }
+        }
+        if (size < 2) {
+            return NONE;
+        }
+        final long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        final double limit = Math.max(1, sorted[(size - 1) / 2]) * threshold;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (latencies[i] > limit) {
+                endpoints[count] = endpoints[i];
+                latencies[count++] = latencies[i];
+            }
+        }
+        final Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(latencies[b], latencies[a]));
+        final Endpoint[] res = new Endpoint[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = endpoints[order[i]];
+        }
+        return res;
+    }
+
+}
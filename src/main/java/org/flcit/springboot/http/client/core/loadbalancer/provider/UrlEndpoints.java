@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Endpoints of a {@link LoadBalancerProvider} only implementing {@link LoadBalancerProvider#getUrls()}:
+ * built once per urls array so the load balancers keep the same handles between calls.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class UrlEndpoints {
+
+    private static final Map<LoadBalancerProvider, UrlEndpoints> CACHE = new WeakHashMap<>();
+
+    private final String[] urls;
+    final Endpoint[] endpoints;
+    final EndpointIndex index;
+
+    private UrlEndpoints(String[] urls, UrlEndpoints previous) {
+        this.urls = urls;
+        this.endpoints = new Endpoint[urls != null ? urls.length : 0];
+        for (int i = 0; i < endpoints.length; i++) {
+            final Endpoint old = previous != null ? previous.get(urls[i]) : null;
+            this.endpoints[i] = old != null ? old : new Endpoint(urls[i], 1d, null);
+        }
+        this.index = new EndpointIndex(endpoints);
+    }
+
+    private Endpoint get(String url) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getUrl() != null && endpoint.getUrl().equals(url)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    static synchronized UrlEndpoints of(LoadBalancerProvider provider) {
+        final String[] urls = provider.getUrls();
+        UrlEndpoints res = CACHE.get(provider);
+        if (res == null || !Arrays.equals(res.urls, urls)) {
+            res = new UrlEndpoints(urls != null ? urls.clone() : null, res);
+            CACHE.put(provider, res);
+        }
+        return res;
+    }
+
+}
@@ -27,6 +27,7 @@ import javax.net.ssl.X509TrustManager;
 
 import org.apache.http.client.HttpClient;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustAllStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
@@ -68,6 +69,13 @@ public final class SSLUtilities {
                 .setSSLContext(_SSLContext);
     }
 
+    /**
+     * @return socket factory without certificate and host name verification
+     */
+    public static SSLConnectionSocketFactory getSSLConnectionSocketFactory() {
+        return new SSLConnectionSocketFactory(_SSLContext, NoopHostnameVerifier.INSTANCE);
+    }
+
     /**
      * @param connection
      */
@@ -37,6 +37,9 @@ import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 
 import org.flcit.springboot.commons.test.util.ReflectionTestUtils;
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.HealthProbeConfiguration;
 
 class HttpClientBuilderTest {
 
@@ -157,6 +160,50 @@ class HttpClientBuilderTest {
         assertEquals(MAX_CONNECTION_TOTAL, pool.getMaxTotal());
     }
 
+    @Test
+    void testBuildPartitionedNullMax() {
+        final HttpClientBuilder builder = new HttpClientBuilder(null);
+        builder.setMaxConnectionPerRoute(null)
+            .setMaxConnectionTotal(null)
+            .setMinConnectionPerRoute(1);
+        final ClientHttpRequestFactory httpBuilder = builder.build(new HttpClientBuilderConfiguration());
+        final PoolingHttpClientConnectionManager pool = (PoolingHttpClientConnectionManager) ReflectionTestUtils.getFieldValue(((HttpComponentsClientHttpRequestFactory) httpBuilder).getHttpClient(), "connManager");
+        assertInstanceOf(PartitionedHttpClientConnectionManager.class, pool);
+        assertEquals(2, pool.getDefaultMaxPerRoute());
+        assertEquals(20, pool.getMaxTotal());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testBuildPartitionedSsl() {
+        final HttpClientBuilder builder = new HttpClientBuilder(null);
+        builder.setMinConnectionPerRoute(1);
+        final ClientHttpRequestFactory httpBuilder = builder.build(new HttpClientBuilderConfiguration().setSslCertificateVerification(false));
+        final PoolingHttpClientConnectionManager pool = (PoolingHttpClientConnectionManager) ReflectionTestUtils.getFieldValue(((HttpComponentsClientHttpRequestFactory) httpBuilder).getHttpClient(), "connManager");
+        assertInstanceOf(PartitionedHttpClientConnectionManager.class, pool);
+        assertEquals(NoopHostnameVerifier.INSTANCE, ReflectionTestUtils.getFieldValue(((Lookup<ConnectionSocketFactory>) ReflectionTestUtils.getFieldValue(ReflectionTestUtils.getFieldValue(pool, "connectionOperator"), "socketFactoryRegistry")).lookup("https"), "hostnameVerifier"));
+    }
+
+    @Test
+    void testBuildHealthProbeTimeout() {
+        final HealthProbeConfiguration healthProbe = new HealthProbeConfiguration();
+        healthProbe.setActive(true);
+        healthProbe.setTimeout(500);
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setHealthProbe(healthProbe);
+        final LoadBalancerClient loadBalancerClient = new LoadBalancerClient();
+        loadBalancerClient.setFailOver(failOver);
+        final HttpClientBuilderConfiguration builderConfiguration = new HttpClientBuilderConfiguration();
+        builderConfiguration.setConnectTimeout(CONNECTION_TIMEOUT)
+            .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT)
+            .setSocketTimeout(SOCKET_TIMEOUT);
+        new HttpClientBuilder(null).build(builderConfiguration, null, loadBalancerClient);
+        final RequestConfig defaultConfig = (RequestConfig) ReflectionTestUtils.getFieldValue(healthProbe.getHttpClient(), "defaultConfig");
+        assertEquals(500, defaultConfig.getConnectTimeout());
+        assertEquals(500, defaultConfig.getConnectionRequestTimeout());
+        assertEquals(500, defaultConfig.getSocketTimeout());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     void testBuildCustomValues() {
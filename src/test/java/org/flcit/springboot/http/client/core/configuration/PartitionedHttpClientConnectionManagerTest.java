@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.junit.jupiter.api.Test;
+
+class PartitionedHttpClientConnectionManagerTest {
+
+    private static final HttpRoute ROUTE_1 = new HttpRoute(new HttpHost("host1", 80));
+    private static final HttpRoute ROUTE_2 = new HttpRoute(new HttpHost("host2", 80));
+    private static final HttpRoute ROUTE_3 = new HttpRoute(new HttpHost("host3", 80));
+    private static final Registry<ConnectionSocketFactory> REGISTRY = RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .build();
+
+    @Test
+    void reserve() throws Exception {
+        try (PartitionedHttpClientConnectionManager manager = new PartitionedHttpClientConnectionManager(REGISTRY, 4, 4, 1)) {
+            assertNotNull(lease(manager, ROUTE_1));
+            assertNotNull(lease(manager, ROUTE_2));
+            assertNotNull(lease(manager, ROUTE_3));
+            assertNotNull(lease(manager, ROUTE_1));
+            assertEquals(2, manager.getMaxPerRoute(ROUTE_1));
+            assertThrows(ConnectionPoolTimeoutException.class, () -> lease(manager, ROUTE_1));
+            assertThrows(ConnectionPoolTimeoutException.class, () -> lease(manager, ROUTE_2));
+        }
+    }
+
+    @Test
+    void releaseAndForget() throws Exception {
+        try (PartitionedHttpClientConnectionManager manager = new PartitionedHttpClientConnectionManager(REGISTRY, 4, 4, 1, 0)) {
+            assertNotNull(lease(manager, ROUTE_1));
+            assertNotNull(lease(manager, ROUTE_2));
+            final HttpClientConnection connection = lease(manager, ROUTE_3);
+            assertEquals(2, manager.getMaxPerRoute(ROUTE_1));
+            manager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+            // RECOMPUTED BY THE TIMER
+            assertEquals(2, manager.getMaxPerRoute(ROUTE_1));
+            manager.partition(null);
+            assertEquals(3, manager.getMaxPerRoute(ROUTE_1));
+            assertNotNull(lease(manager, ROUTE_1));
+            assertNotNull(lease(manager, ROUTE_1));
+            assertEquals(3, manager.getStats(ROUTE_1).getLeased());
+        }
+    }
+
+    private static HttpClientConnection lease(PartitionedHttpClientConnectionManager manager, HttpRoute route)
+            throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+        return manager.requestConnection(route, null).get(100, TimeUnit.MILLISECONDS);
+    }
+
+}
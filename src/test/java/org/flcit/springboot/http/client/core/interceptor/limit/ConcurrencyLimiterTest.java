@@ -0,0 +1,85 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.limit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+
+import org.flcit.springboot.http.client.core.configuration.HttpClientConcurrencyLimitConfiguration;
+
+class ConcurrencyLimiterTest {
+
+    private static final long RTT = 10_000_000L;
+
+    @Test
+    void gradient() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(new HttpClientConcurrencyLimitConfiguration().setInitialLimit(10).setMaxLimit(100));
+        assertEquals(10, fill(limiter));
+        assertFalse(limiter.tryAcquire());
+        for (int i = 0; i < 10; i++) {
+            limiter.release(RTT, false);
+        }
+        for (int i = 0; i < 50; i++) {
+            cycle(limiter, RTT, false);
+        }
+        final int grown = limiter.getLimit();
+        assertTrue(grown > 10);
+        cycle(limiter, RTT * 4, false);
+        final int shrunk = limiter.getLimit();
+        assertTrue(shrunk < grown);
+        for (int i = 0; i < 5; i++) {
+            cycle(limiter, 0, true);
+        }
+        assertTrue(limiter.getLimit() < shrunk);
+        assertEquals(0, limiter.getInflight());
+    }
+
+    @Test
+    void boundedLimiters() {
+        final ConcurrencyLimitClientHttpRequestInterceptor interceptor = new ConcurrencyLimitClientHttpRequestInterceptor("test", new HttpClientConcurrencyLimitConfiguration());
+        final ConcurrencyLimiter busy = interceptor.getLimiter(URI.create("http://busy:8080/api"));
+        assertTrue(busy.tryAcquire());
+        for (int i = 0; i < ConcurrencyLimitClientHttpRequestInterceptor.MAX_LIMITERS * 2; i++) {
+            interceptor.getLimiter(URI.create("http://host" + i + ":8080/api"));
+        }
+        assertTrue(interceptor.size() <= ConcurrencyLimitClientHttpRequestInterceptor.MAX_LIMITERS);
+        // A LIMIT WITH CALLS IN FLIGHT IS KEPT
+        assertSame(busy, interceptor.getLimiter(URI.create("http://busy:8080/other")));
+    }
+
+    private static int fill(ConcurrencyLimiter limiter) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    private static void cycle(ConcurrencyLimiter limiter, long rtt, boolean dropped) {
+        final int acquired = fill(limiter);
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(rtt, dropped);
+        }
+    }
+
+}
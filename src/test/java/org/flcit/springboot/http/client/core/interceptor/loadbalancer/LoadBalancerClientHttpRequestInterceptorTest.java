@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.CircuitBreakerConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+
+class LoadBalancerClientHttpRequestInterceptorTest {
+
+    private static final String URL = "http://service.local/api";
+
+    @Test
+    void failOver() throws IOException {
+        final AtomicInteger unavailable = new AtomicInteger();
+        final HttpServer down = server(503, unavailable);
+        final HttpServer up = server(200, new AtomicInteger());
+        try {
+            final FailOverConfiguration failOver = new FailOverConfiguration();
+            failOver.setActive(true);
+            failOver.setFailMaxAttempt(2);
+            failOver.setCircuitBreaker(new CircuitBreakerConfiguration());
+            failOver.getCircuitBreaker().setMinimumFailures(2);
+            failOver.setRetryBackoff(0);
+            final LoadBalancerClient client = new LoadBalancerClient();
+            client.setActive(true);
+            client.setUrls(new String[] { url(down), url(up) });
+            client.setFailOver(failOver);
+            final AtomicInteger attempts = new AtomicInteger();
+            final ClientHttpRequestInterceptor counter = (request, body, execution) -> {
+                if ("127.0.0.1".equals(request.getURI().getHost())) {
+                    attempts.incrementAndGet();
+                }
+                return execution.execute(request, body);
+            };
+            final LoadBalancerClientHttpRequestInterceptor interceptor = new LoadBalancerClientHttpRequestInterceptor(client, URL, Collections.singletonList(counter));
+            final RestTemplate restTemplate = new RestTemplate();
+            restTemplate.getInterceptors().add(interceptor);
+            for (int i = 0; i < 10; i++) {
+                assertEquals("/api/resource?id=" + i, restTemplate.getForObject(URL + "/resource?id=" + i, String.class));
+            }
+            assertEquals(2, unavailable.get());
+            assertEquals(12, attempts.get());
+            assertEquals(URI.create("http://other:8080/api/resource"), UriRebase.rebase(URI.create("https://service.local/api/resource"), URL + "/v2", "http://other:8080"));
+        } finally {
+            down.stop(0);
+            up.stop(0);
+        }
+    }
+
+    @Test
+    void notIdempotent() throws IOException {
+        final AtomicInteger unavailable = new AtomicInteger();
+        final AtomicInteger available = new AtomicInteger();
+        final HttpServer down = server(503, unavailable);
+        final HttpServer up = server(200, available);
+        final int closed;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closed = socket.getLocalPort();
+        }
+        try {
+            final RestTemplate restTemplate = new RestTemplate();
+            restTemplate.getInterceptors().add(new LoadBalancerClientHttpRequestInterceptor(client(url(down), url(up)), URL));
+            int errors = 0;
+            for (int i = 0; i < 4; i++) {
+                try {
+                    restTemplate.postForObject(URL + "/resource", "body", String.class);
+                } catch (HttpServerErrorException e) {
+                    errors++;
+                }
+            }
+            assertTrue(errors > 0);
+            assertEquals(errors, unavailable.get());
+            assertEquals(4, unavailable.get() + available.get());
+            restTemplate.getInterceptors().set(0, new LoadBalancerClientHttpRequestInterceptor(client("http://127.0.0.1:" + closed + "/api", url(up)), URL));
+            for (int i = 0; i < 4; i++) {
+                assertEquals("/api/resource", restTemplate.postForObject(URL + "/resource", "body", String.class));
+            }
+        } finally {
+            down.stop(0);
+            up.stop(0);
+        }
+    }
+
+    private static LoadBalancerClient client(String... urls) {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setActive(true);
+        failOver.setFailMaxAttempt(2);
+        failOver.setCircuitBreaker(new CircuitBreakerConfiguration());
+        failOver.getCircuitBreaker().setMinimumFailures(2);
+        failOver.setRetryBackoff(0);
+        final LoadBalancerClient res = new LoadBalancerClient();
+        res.setActive(true);
+        res.setUrls(urls);
+        res.setFailOver(failOver);
+        return res;
+    }
+
+    private static HttpServer server(int status, AtomicInteger calls) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api", exchange -> {
+            calls.incrementAndGet();
+            final byte[] body = exchange.getRequestURI().toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String url(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+
+}
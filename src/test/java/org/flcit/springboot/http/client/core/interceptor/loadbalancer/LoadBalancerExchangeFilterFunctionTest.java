@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.CircuitBreakerConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.LoadBalancerAlgorithm;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+class LoadBalancerExchangeFilterFunctionTest {
+
+    private static final String URL = "http://service.local/api";
+    private static final String URL_1 = "http://host1:8080/api";
+    private static final String URL_2 = "http://host2:8080/api";
+
+    @Test
+    void failOver() {
+        final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        final ExchangeFunction exchange = request -> {
+            calls.computeIfAbsent(request.url().getHost(), k -> new AtomicInteger()).incrementAndGet();
+            return Mono.just(ClientResponse.create("host1".equals(request.url().getHost()) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK).build());
+        };
+        final LoadBalancerExchangeFilterFunction filter = new LoadBalancerExchangeFilterFunction(client(configuration(), 0), URL);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, filter.filter(request(HttpMethod.GET), exchange).block().rawStatusCode());
+        }
+        assertEquals(2, calls.get("host1").get());
+        assertEquals(10, calls.get("host2").get());
+    }
+
+    @Test
+    void retryOtherUrl() {
+        final FailOverConfiguration failOver = configuration();
+        failOver.getCircuitBreaker().setMinimumFailures(3);
+        final LoadBalancerClient client = client(failOver, 0);
+        client.setAlgorithm(LoadBalancerAlgorithm.leastRequests);
+        final LoadBalancerExchangeFilterFunction filter = new LoadBalancerExchangeFilterFunction(client, URL);
+        for (int i = 0; i < 2; i++) {
+            final List<String> hosts = new ArrayList<>();
+            final ExchangeFunction exchange = request -> {
+                hosts.add(request.url().getHost());
+                return Mono.just(ClientResponse.create(hosts.size() == 1 ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK).build());
+            };
+            assertEquals(200, filter.filter(request(HttpMethod.GET), exchange).block().rawStatusCode());
+            assertNotEquals(hosts.get(0), hosts.get(1));
+        }
+    }
+
+    @Test
+    void retry() {
+        final FailOverConfiguration failOver = configuration();
+        failOver.setRetryStatus(new int[] { 502 });
+        failOver.setRetryExceptions(new Class<?>[] { IllegalStateException.class });
+        final AtomicInteger calls = new AtomicInteger();
+        final ExchangeFunction exchange = request -> {
+            calls.incrementAndGet();
+            if (!"host1".equals(request.url().getHost())) {
+                return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+            }
+            return HttpMethod.PUT.equals(request.method()) ? Mono.error(new IllegalStateException("closed"))
+                    : Mono.just(ClientResponse.create(HttpStatus.BAD_GATEWAY).build());
+        };
+        final LoadBalancerExchangeFilterFunction filter = new LoadBalancerExchangeFilterFunction(client(failOver, 0), URL);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(200, filter.filter(request(HttpMethod.GET), exchange).block().rawStatusCode());
+            assertEquals(200, filter.filter(request(HttpMethod.PUT), exchange).block().rawStatusCode());
+        }
+        assertTrue(calls.get() > 8);
+        int errors = 0;
+        for (int i = 0; i < 4; i++) {
+            errors += filter.filter(request(HttpMethod.POST), exchange).block().rawStatusCode() == 502 ? 1 : 0;
+        }
+        assertEquals(2, errors);
+    }
+
+    @Test
+    void cancel() {
+        final AtomicInteger calls = new AtomicInteger();
+        final ExchangeFunction exchange = request -> calls.getAndIncrement() < 2 ? Mono.never() : Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        final LoadBalancerExchangeFilterFunction filter = new LoadBalancerExchangeFilterFunction(client(configuration(), 1), URL);
+        final Disposable first = filter.filter(request(HttpMethod.GET), exchange).subscribe();
+        final Disposable second = filter.filter(request(HttpMethod.GET), exchange).subscribe();
+        first.dispose();
+        second.dispose();
+        assertTrue(first.isDisposed());
+        // EVERY URL IS FULL WITHOUT THE RELEASE ON CANCEL
+        for (int i = 0; i < 4; i++) {
+            assertEquals(200, filter.filter(request(HttpMethod.GET), exchange).block().rawStatusCode());
+        }
+    }
+
+    private static ClientRequest request(HttpMethod method) {
+        return ClientRequest.create(method, URI.create(URL + "/resource")).build();
+    }
+
+    private static FailOverConfiguration configuration() {
+        final FailOverConfiguration res = new FailOverConfiguration();
+        res.setActive(true);
+        res.setFailMaxAttempt(2);
+        res.setCircuitBreaker(new CircuitBreakerConfiguration());
+        res.getCircuitBreaker().setMinimumFailures(2);
+        res.setRetryBackoff(0);
+        return res;
+    }
+
+    private static LoadBalancerClient client(FailOverConfiguration failOver, int maxInFlight) {
+        final LoadBalancerClient res = new LoadBalancerClient();
+        res.setActive(true);
+        res.setUrls(new String[] { URL_1, URL_2 });
+        res.setFailOver(failOver);
+        res.setMaxInFlight(maxInFlight);
+        return res;
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.interceptor.loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StreamUtils;
+import org.springframework.ws.client.WebServiceTransportException;
+import org.springframework.ws.client.core.WebServiceTemplate;
+import org.springframework.ws.pox.dom.DomPoxMessageFactory;
+import org.springframework.ws.transport.FaultAwareWebServiceConnection;
+import org.springframework.ws.transport.WebServiceConnection;
+import org.springframework.ws.transport.http.HttpUrlConnectionMessageSender;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.CircuitBreakerConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+
+class LoadBalancerWebServiceMessageSenderTest {
+
+    private static final String URL = "http://service.local/ws";
+    private static final String MESSAGE = "<echo xmlns=\"urn:test\">%s</echo>";
+
+    @Test
+    void failOver() throws IOException {
+        final List<String> unavailable = new ArrayList<>();
+        final HttpServer down = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        down.createContext("/ws", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                unavailable.add(StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Retry-After", "60");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        final HttpServer up = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        up.createContext("/ws", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                StreamUtils.drain(in);
+            }
+            final byte[] body = String.format(MESSAGE, exchange.getRequestHeaders().getFirst("Content-Type") != null ? "ok" : "ko").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        down.start();
+        up.start();
+        try {
+            final WebServiceTemplate template = new WebServiceTemplate(new DomPoxMessageFactory());
+            template.setDefaultUri(URL);
+            template.setMessageSender(new LoadBalancerWebServiceMessageSender(new HttpUrlConnectionMessageSender(), client(url(down), url(up)), URL));
+            int errors = 0;
+            for (int i = 0; i < 6; i++) {
+                try {
+                    assertTrue(send(template, i).contains(">ok<"));
+                } catch (WebServiceTransportException e) {
+                    errors++;
+                }
+            }
+            // SENT, NOT RETRIED, EXCLUDED BY ITS RETRY-AFTER
+            assertEquals(1, errors);
+            assertEquals(1, unavailable.size());
+            assertTrue(unavailable.get(0).contains("<echo xmlns=\"urn:test\">"));
+            final int closed;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                closed = socket.getLocalPort();
+            }
+            template.setMessageSender(new LoadBalancerWebServiceMessageSender(new HttpUrlConnectionMessageSender(), client("http://127.0.0.1:" + closed + "/ws", url(up)), URL));
+            for (int i = 0; i < 4; i++) {
+                assertTrue(send(template, i).contains(">ok<"));
+            }
+        } finally {
+            down.stop(0);
+            up.stop(0);
+        }
+    }
+
+    @Test
+    void noFaultWithoutDelegate() throws IOException {
+        final LoadBalancerWebServiceMessageSender sender = new LoadBalancerWebServiceMessageSender(new HttpUrlConnectionMessageSender(), client(URL), URL);
+        try (WebServiceConnection connection = sender.createConnection(URI.create(URL))) {
+            assertFalse(((FaultAwareWebServiceConnection) connection).hasFault());
+        }
+    }
+
+    private static String send(WebServiceTemplate template, int i) {
+        final StringWriter result = new StringWriter();
+        template.sendSourceAndReceiveToResult(new StreamSource(new StringReader(String.format(MESSAGE, i))), new StreamResult(result));
+        return result.toString();
+    }
+
+    private static LoadBalancerClient client(String... urls) {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setActive(true);
+        failOver.setFailMaxAttempt(2);
+        failOver.setCircuitBreaker(new CircuitBreakerConfiguration());
+        failOver.getCircuitBreaker().setMinimumFailures(2);
+        failOver.setRetryBackoff(0);
+        final LoadBalancerClient res = new LoadBalancerClient();
+        res.setActive(true);
+        res.setUrls(urls);
+        res.setFailOver(failOver);
+        return res;
+    }
+
+    private static String url(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/ws";
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.HedgingConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.LoadBalancerAlgorithm;
+
+class HedgingExecutorTest {
+
+    private static final String URL_1 = "http://host1:8080/api";
+    private static final String URL_2 = "http://host2:8080/api";
+
+    @Test
+    void hedgeAndCap() {
+        final HedgingConfiguration hedging = new HedgingConfiguration();
+        hedging.setActive(true);
+        hedging.setDelay(20);
+        hedging.setMaxRate(0);
+        final LoadBalancerClient client = new LoadBalancerClient();
+        client.setActive(true);
+        client.setUrls(new String[] { URL_1, URL_2 });
+        client.setAlgorithm(LoadBalancerAlgorithm.roundRobin);
+        client.setHedging(hedging);
+        client.init();
+        final HedgingExecutor executor = new HedgingExecutor(client);
+        final AtomicInteger cancelled = new AtomicInteger();
+        final AtomicInteger pooled = new AtomicInteger();
+        final Thread caller = Thread.currentThread();
+        final HedgingExecutor.Call<String> call = (url, onCancel) -> {
+            if (URL_1.equals(url)) {
+                if (Thread.currentThread() != caller) {
+                    pooled.incrementAndGet();
+                }
+                final CountDownLatch latch = new CountDownLatch(1);
+                onCancel.accept(() -> {
+                    cancelled.incrementAndGet();
+                    latch.countDown();
+                });
+                try {
+                    latch.await(300, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return url;
+        };
+        for (int i = 0; i < 10; i++) {
+            assertEquals(URL_2, executor.execute(URL_1, call));
+        }
+        assertEquals(10, cancelled.get());
+        assertEquals(0, pooled.get());
+        assertEquals(URL_1, executor.execute(URL_1, call));
+    }
+
+    @Test
+    void hedgeWithoutCancellation() {
+        final HedgingConfiguration hedging = new HedgingConfiguration();
+        hedging.setActive(true);
+        hedging.setDelay(20);
+        final LoadBalancerClient client = new LoadBalancerClient();
+        client.setActive(true);
+        client.setUrls(new String[] { URL_1, URL_2 });
+        client.setAlgorithm(LoadBalancerAlgorithm.roundRobin);
+        client.setHedging(hedging);
+        client.init();
+        final HedgingExecutor executor = new HedgingExecutor(client);
+        final Function<String, String> call = url -> {
+            if (URL_1.equals(url)) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return url;
+        };
+        final long start = System.nanoTime();
+        assertEquals(URL_2, executor.execute(URL_1, call));
+        // THE CALLER DOES NOT WAIT FOR THE SLOW PRIMARY
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+    }
+
+}
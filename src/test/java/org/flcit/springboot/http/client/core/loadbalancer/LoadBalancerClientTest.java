@@ -0,0 +1,130 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ConnectException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.LoadBalancerAlgorithm;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+
+class LoadBalancerClientTest {
+
+    private static final String URL_1 = "http://host1:8080/api";
+    private static final String URL_2 = "http://host2:8080/api";
+    private static final String URL_3 = "http://host3:8080/api";
+    private static final String URL_4 = "http://host4:8080/api";
+
+    @Test
+    void refresh() {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setActive(true);
+        failOver.setFailMaxAttempt(1);
+        final LoadBalancerClient client = new LoadBalancerClient();
+        client.setActive(true);
+        client.setUrls(new String[] { URL_1, URL_2, URL_3 });
+        client.setAlgorithm(LoadBalancerAlgorithm.leastRequests);
+        client.setFailOver(failOver);
+        client.init();
+        client.fail(URL_2, new ResourceAccessException("I/O error", new ConnectException()));
+        Endpoint inFlight;
+        do {
+            inFlight = client.getEndpoint();
+            if (!URL_1.equals(inFlight.getUrl())) {
+                client.release(inFlight);
+            }
+        } while (!URL_1.equals(inFlight.getUrl()));
+        client.setUrls(new String[] { URL_1, URL_2, URL_4 });
+        client.refresh();
+        for (int i = 0; i < 10; i++) {
+            final Endpoint endpoint = client.getEndpoint();
+            assertEquals(URL_4, endpoint.getUrl());
+            client.release(endpoint);
+        }
+        client.release(inFlight);
+        final Set<String> urls = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            final Endpoint endpoint = client.getEndpoint();
+            urls.add(endpoint.getUrl());
+            client.ok(endpoint);
+        }
+        assertEquals(2, urls.size());
+        assertTrue(urls.contains(URL_1) && urls.contains(URL_4));
+    }
+
+    @Test
+    void throttle() throws InterruptedException {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setActive(true);
+        failOver.setFailMaxAttempt(1);
+        failOver.setThrottleWeight(0);
+        failOver.setThrottleDuration(200);
+        final LoadBalancerClient client = new LoadBalancerClient();
+        client.setActive(true);
+        client.setUrls(new String[] { URL_1, URL_2 });
+        client.setFailOver(failOver);
+        client.init();
+        assertEquals(URL_1, client.fail(URL_1, new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)));
+        for (int i = 0; i < 10; i++) {
+            final Endpoint endpoint = client.getEndpoint();
+            assertEquals(URL_2, endpoint.getUrl());
+            client.ok(endpoint);
+        }
+        Thread.sleep(300);
+        final Set<String> urls = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            final Endpoint endpoint = client.getEndpoint();
+            urls.add(endpoint.getUrl());
+            client.ok(endpoint);
+        }
+        assertTrue(urls.contains(URL_1));
+    }
+
+    @Test
+    void bulkhead() {
+        final LoadBalancerClient client = new LoadBalancerClient();
+        client.setActive(true);
+        client.setUrls(new String[] { URL_1, URL_2 });
+        client.setAlgorithm(LoadBalancerAlgorithm.leastRequests);
+        client.setMaxInFlight(2);
+        client.init();
+        final Endpoint first = client.getEndpoint();
+        final Endpoint second = client.getEndpoint();
+        final Endpoint third = client.getEndpoint();
+        final Endpoint fourth = client.getEndpoint();
+        assertNotEquals(third.getUrl(), fourth.getUrl());
+        assertThrows(BulkheadFullException.class, client::getEndpoint);
+        client.release(first);
+        assertEquals(first.getUrl(), client.getEndpoint().getUrl());
+        assertThrows(BulkheadFullException.class, client::getEndpoint);
+        client.release(second.getUrl());
+        assertEquals(second.getUrl(), client.getEndpoint().getUrl());
+    }
+
+}
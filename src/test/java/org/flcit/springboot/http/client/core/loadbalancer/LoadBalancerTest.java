@@ -0,0 +1,281 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.LoadBalancerAlgorithm;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.FailOverLoadBalancerProvider;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
+
+class LoadBalancerTest {
+
+    private static final String URL_1 = "http://host1:8080/api";
+    private static final String URL_2 = "http://host2:8080/api";
+    private static final String URL_3 = "http://host3:8080/api";
+    private static final String[] URLS = { URL_1, URL_2, URL_3 };
+
+    @Test
+    void roundRobin() {
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.roundRobin, URLS, null, false);
+        for (int i = 0; i < 9; i++) {
+            assertEquals(URLS[i % URLS.length], loadBalancer.getUrl());
+        }
+    }
+
+    @Test
+    void roundRobinFailOver() {
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.roundRobin, URLS, null, true);
+        assertEquals(URL_1, loadBalancer.getUrl());
+        loadBalancer.fail(URL_2 + "/resource", 60000);
+        for (int i = 0; i < 4; i++) {
+            final String url = loadBalancer.getUrl();
+            assertTrue(URL_1.equals(url) || URL_3.equals(url));
+        }
+    }
+
+    @Test
+    void weightRoundRobinSmooth() {
+        final LoadBalancer loadBalancer = LoadBalancer.getWeightedLoadBalancer(LoadBalancerAlgorithm.weightRoundRobin, URLS, new double[] { 5, 1, 1 }, false);
+        final String[] expected = { URL_1, URL_1, URL_2, URL_1, URL_3, URL_1, URL_1 };
+        for (int i = 0; i < expected.length * 3; i++) {
+            assertEquals(expected[i % expected.length], loadBalancer.getUrl());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void weightRoundRobinIntWeights() {
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.weightRoundRobin, URLS, new int[] { 5, 1, 1 }, false);
+        final String[] expected = { URL_1, URL_1, URL_2, URL_1, URL_3, URL_1, URL_1 };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], loadBalancer.getUrl());
+        }
+    }
+
+    @Test
+    void weightRoundRobinFailOver() {
+        final LoadBalancer loadBalancer = LoadBalancer.getWeightedLoadBalancer(LoadBalancerAlgorithm.weightRoundRobin, URLS, new double[] { 100, 250, 650 }, true);
+        loadBalancer.fail(URL_3, 60000);
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 700; i++) {
+            counts.merge(loadBalancer.getUrl(), 1, Integer::sum);
+        }
+        assertEquals(200, counts.get(URL_1));
+        assertEquals(500, counts.get(URL_2));
+        assertNull(counts.get(URL_3));
+    }
+
+    @Test
+    void weightRandomFractional() {
+        final LoadBalancer loadBalancer = LoadBalancer.getWeightedLoadBalancer(LoadBalancerAlgorithm.weightRandom, URLS, new double[] { 0.5, 49.5, 50 }, true);
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            counts.merge(loadBalancer.getUrl(), 1, Integer::sum);
+        }
+        assertTrue(counts.get(URL_1) > 300 && counts.get(URL_1) < 700);
+        assertTrue(counts.get(URL_2) > 48000 && counts.get(URL_2) < 51000);
+        loadBalancer.fail(URL_3, 60000);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(!URL_3.equals(loadBalancer.getUrl()));
+        }
+    }
+
+    @Test
+    void leastRequests() {
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.leastRequests, URLS, null, true);
+        final Set<String> taken = new HashSet<>();
+        for (int i = 0; i < URLS.length; i++) {
+            taken.add(loadBalancer.getUrl());
+        }
+        assertEquals(URLS.length, taken.size());
+        loadBalancer.release(URL_2 + "/resource");
+        assertEquals(URL_2, loadBalancer.getUrl());
+        loadBalancer.ok(URL_3 + "/resource");
+        assertEquals(URL_3, loadBalancer.getUrl());
+    }
+
+    @Test
+    void p2cEwma() {
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.p2cEwma, URLS, null, false);
+        for (int i = 0; i < 30; i++) {
+            final String url = loadBalancer.getUrl();
+            loadBalancer.release(url, URL_2.equals(url) ? 400_000_000 : 4_000_000);
+        }
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            final String url = loadBalancer.getUrl();
+            counts.merge(url, 1, Integer::sum);
+            loadBalancer.release(url, URL_2.equals(url) ? 400_000_000 : 4_000_000);
+        }
+        assertTrue(counts.getOrDefault(URL_2, 0) < 30);
+    }
+
+    @Test
+    void ipHashConsistent() {
+        final String[] urls = { URL_1, URL_2, URL_3, "http://host4:8080/api" };
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.ipHash, urls, null, true);
+        final Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            final String key = "10.0." + (i / 256) + "." + (i % 256);
+            before.put(key, loadBalancer.getUrl(key));
+        }
+        assertEquals(urls.length, new HashSet<>(before.values()).size());
+        loadBalancer.fail(URL_2, 60000);
+        int moved = 0;
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            final String url = loadBalancer.getUrl(entry.getKey());
+            if (URL_2.equals(entry.getValue())) {
+                moved++;
+            } else {
+                assertEquals(entry.getValue(), url);
+            }
+        }
+        assertTrue(moved > 100 && moved < 400);
+    }
+
+    @Test
+    void endpointIndex() {
+        final String[] urls = { "http://host1:8080", "http://host1:8080/api/v2", URL_2, "https://host3/api" };
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.roundRobin, urls, null, true);
+        assertEquals(urls[1], loadBalancer.resolve("http://host1:8080/api/v2/resource").getUrl());
+        assertEquals(urls[0], loadBalancer.resolve("http://host1:8080/api/v1/resource").getUrl());
+        assertEquals(urls[1], loadBalancer.resolve(URI.create("http://HOST1:8080/api/v2/resource?q=1")).getUrl());
+        assertEquals(urls[3], loadBalancer.resolve(URI.create("https://host3:443/api/resource")).getUrl());
+        assertNull(loadBalancer.resolve(URI.create("http://host3/api/resource")));
+        assertNull(loadBalancer.resolve("http://host4:8080/api"));
+        final Endpoint endpoint = loadBalancer.getEndpoint();
+        assertSame(endpoint, loadBalancer.resolve(endpoint.getUrl() + "/resource"));
+        assertSame(endpoint, loadBalancer.fail(endpoint, 60000));
+        for (int i = 0; i < 6; i++) {
+            assertTrue(endpoint != loadBalancer.getEndpoint());
+        }
+    }
+
+    @Test
+    void nullUrl() {
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer((String) null, false);
+        assertNull(loadBalancer.getUrl());
+        assertNull(loadBalancer.resolve("http://host1:8080/api"));
+        final LoadBalancer roundRobin = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.roundRobin, new String[] { URL_1, null }, null, true);
+        assertEquals(URL_1, roundRobin.resolve(URL_1 + "/resource").getUrl());
+        assertNull(roundRobin.resolve("http://host4:8080/api"));
+    }
+
+    @Test
+    void zoneAware() {
+        final String[] urls = { URL_1, URL_2, URL_3, "http://host4:8080/api" };
+        final LoadBalancerProvider provider = LoadBalancer.getLoadBalancerProvider(urls, null, new String[] { "a", "a", "b", "b" }, failOver());
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.roundRobin, provider, "a");
+        for (int i = 0; i < 100; i++) {
+            assertEquals("a", loadBalancer.getEndpoint().getZone());
+        }
+        loadBalancer.fail(URL_1, 60000);
+        int remote = 0;
+        for (int i = 0; i < 10000; i++) {
+            final Endpoint endpoint = loadBalancer.getEndpoint();
+            assertTrue(!URL_1.equals(endpoint.getUrl()));
+            if ("b".equals(endpoint.getZone())) {
+                remote++;
+            }
+        }
+        assertTrue(remote > 2500 && remote < 3500);
+        loadBalancer.fail(URL_2, 60000);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("b", loadBalancer.getEndpoint().getZone());
+        }
+    }
+
+    @Test
+    void zoneAwareKeyAndOverload() {
+        final String[] urls = { URL_1, URL_2, URL_3, "http://host4:8080/api" };
+        final LoadBalancerProvider provider = LoadBalancer.getLoadBalancerProvider(urls, null, new String[] { "a", "a", "b", "b" }, failOver());
+        final AbstractLoadBalancer loadBalancer = (AbstractLoadBalancer) LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.ipHash, provider, "a");
+        loadBalancer.fail(URL_1, 60000);
+        for (int i = 0; i < 100; i++) {
+            final String key = "10.0.0." + i;
+            final Endpoint endpoint = loadBalancer.getEndpoint(key);
+            for (int j = 0; j < 5; j++) {
+                assertSame(endpoint, loadBalancer.getEndpoint(key));
+            }
+        }
+        final AbstractLoadBalancer bulkhead = (AbstractLoadBalancer) LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.roundRobin,
+                LoadBalancer.getLoadBalancerProvider(urls, null, new String[] { "a", "a", "b", "b" }, failOver()), "a");
+        bulkhead.setBulkhead(1);
+        assertEquals("a", bulkhead.getEndpoint().getZone());
+        assertEquals("a", bulkhead.getEndpoint().getZone());
+        assertEquals("b", bulkhead.getEndpoint().getZone());
+    }
+
+    @Test
+    void slowStart() {
+        final FailOverConfiguration failOver = failOver();
+        failOver.getSlowStart().setWindow(60000);
+        final FailOverLoadBalancerProvider provider = new FailOverLoadBalancerProvider(URLS, null, failOver);
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.leastRequests, provider);
+        final Endpoint endpoint = provider.getEndpoint(URL_2);
+        provider.fail(endpoint, -1);
+        provider.take(endpoint);
+        provider.ok(endpoint, 1000);
+        assertEquals(0.1, provider.getSlowStartFactor(endpoint), 0.01);
+        assertEquals(1, provider.getSlowStartFactor(provider.getEndpoint(URL_1)));
+        int warming = 0;
+        for (int i = 0; i < 9000; i++) {
+            final Endpoint value = loadBalancer.getEndpoint();
+            if (value == endpoint) {
+                warming++;
+            }
+            loadBalancer.release(value, -1);
+        }
+        assertTrue(warming > 100 && warming < 600);
+    }
+
+    @Test
+    void urlsOnlyProvider() {
+        final LoadBalancerProvider provider = () -> URLS;
+        final LoadBalancer loadBalancer = LoadBalancer.getLoadBalancer(LoadBalancerAlgorithm.leastRequests, provider);
+        final Endpoint endpoint = loadBalancer.getEndpoint();
+        assertSame(endpoint, provider.getEndpoint(endpoint.getUrl() + "/path"));
+        loadBalancer.release(endpoint, -1);
+        final Set<String> urls = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            urls.add(loadBalancer.getUrl());
+        }
+        assertEquals(3, urls.size());
+    }
+
+    private static FailOverConfiguration failOver() {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setActive(true);
+        failOver.setFailMaxAttempt(1);
+        return failOver;
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.CircuitBreakerConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.LoadBalancerAlgorithm;
+
+class RetryExecutorTest {
+
+    private static final String URL_1 = "http://host1:8080/api";
+    private static final String URL_2 = "http://host2:8080/api";
+    private static final String URL_3 = "http://host3:8080/api";
+
+    @Test
+    void failOver() {
+        final RetryExecutor executor = new RetryExecutor(getClient(new FailOverConfiguration()));
+        final List<String> calls = new ArrayList<>();
+        final String res = executor.execute(URL_1, url -> {
+            calls.add(url);
+            if (URL_1.equals(url)) {
+                throw new ResourceAccessException("I/O error", new ConnectException());
+            }
+            return url;
+        });
+        assertNotEquals(URL_1, res);
+        assertEquals(Arrays.asList(URL_1, res), calls);
+    }
+
+    @Test
+    void retryOtherUrl() {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setCircuitBreaker(new CircuitBreakerConfiguration());
+        failOver.getCircuitBreaker().setMinimumFailures(3);
+        final RetryExecutor executor = new RetryExecutor(getClient(failOver, LoadBalancerAlgorithm.ipHash));
+        final List<String> calls = new ArrayList<>();
+        final String res = executor.execute(URL_1, "10.0.0.1", url -> {
+            calls.add(url);
+            if (calls.size() == 1) {
+                throw new ResourceAccessException("I/O error", new ConnectException());
+            }
+            return url;
+        });
+        // THE FIRST URL IS NOT EJECTED YET BUT THE RETRY GOES ELSEWHERE
+        assertEquals(2, calls.size());
+        assertNotEquals(calls.get(0), res);
+    }
+
+    @Test
+    void retryBudget() {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setRetryStatus(new int[] { 502 });
+        failOver.setRetryMaxAttempt(3);
+        failOver.setRetryBudget(0);
+        failOver.setRetryBudgetMin(1);
+        final LoadBalancerClient client = getClient(failOver);
+        final List<String> calls = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            // THE BUDGET BELONGS TO THE CLIENT, NOT TO THE EXECUTOR
+            final RetryExecutor executor = new RetryExecutor(client);
+            assertThrows(HttpServerErrorException.class, () -> executor.execute(URL_1, url -> {
+                calls.add(url);
+                throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+            }));
+        }
+        assertEquals(3, calls.size());
+    }
+
+    @Test
+    void releaseOnRuntimeException() {
+        final LoadBalancerClient client = new LoadBalancerClient();
+        client.setActive(true);
+        client.setUrls(new String[] { URL_1, URL_2 });
+        client.setAlgorithm(LoadBalancerAlgorithm.leastRequests);
+        client.setMaxInFlight(1);
+        client.setFailOver(new FailOverConfiguration());
+        client.init();
+        final RetryExecutor executor = new RetryExecutor(client);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalArgumentException.class, () -> executor.execute(URL_1, url -> {
+                throw new IllegalArgumentException(url);
+            }));
+        }
+        assertEquals(URL_1, executor.execute(URL_1, url -> URL_1));
+    }
+
+    private static LoadBalancerClient getClient(FailOverConfiguration failOver) {
+        return getClient(failOver, LoadBalancerAlgorithm.roundRobin);
+    }
+
+    private static LoadBalancerClient getClient(FailOverConfiguration failOver, LoadBalancerAlgorithm algorithm) {
+        failOver.setActive(true);
+        failOver.setRetryBackoff(1);
+        failOver.setRetryMaxBackoff(5);
+        final LoadBalancerClient client = new LoadBalancerClient();
+        client.setActive(true);
+        client.setUrls(new String[] { URL_1, URL_2, URL_3 });
+        client.setAlgorithm(algorithm);
+        client.setFailOver(failOver);
+        client.init();
+        return client;
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.flcit.springboot.http.client.core.loadbalancer.provider.BaseLoadBalancerProvider;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.Endpoint;
+import org.flcit.springboot.http.client.core.loadbalancer.provider.LoadBalancerProvider;
+
+/**
+ * Compares the lock-free {@link RoundRobinLoadBalancer} with the previous monitor-based implementation.
+ * Run with {@code main} to execute every benchmark at 1, 8, 64 and 256 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundRobinLoadBalancerBenchmark {
+
+    private static final int[] THREADS = { 1, 8, 64, 256 };
+    private static final String[] URLS = { "http://host1:8080/api", "http://host2:8080/api", "http://host3:8080/api", "http://host4:8080/api" };
+
+    private final LoadBalancer lockFree = new RoundRobinLoadBalancer(new BaseLoadBalancerProvider(URLS));
+    private final LoadBalancer monitor = new MonitorRoundRobinLoadBalancer(new BaseLoadBalancerProvider(URLS));
+
+    @Benchmark
+    public String lockFree() {
+        return lockFree.getUrl();
+    }
+
+    @Benchmark
+    public String monitor() {
+        return monitor.getUrl();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                    .include(RoundRobinLoadBalancerBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+    static final class MonitorRoundRobinLoadBalancer extends AbstractLoadBalancer {
+
+        private int position = 0;
+
+        MonitorRoundRobinLoadBalancer(LoadBalancerProvider loadBalancerProvider) {
+            super(loadBalancerProvider);
+        }
+
+        @Override
+        synchronized Endpoint choose(Endpoint[] endpoints) {
+            if (position >= endpoints.length) {
+                position = 0;
+            }
+            return endpoints[position++];
+        }
+
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.HttpHostConnectException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+class FailureClassifierTest {
+
+    @Test
+    void classify() {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        assertTrue(failOver.isFail(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE)));
+        assertFalse(failOver.isFail(new HttpServerErrorException(HttpStatus.BAD_GATEWAY)));
+        assertTrue(failOver.isFail(new ResourceAccessException("timeout", new SocketTimeoutException("Read timed out"))));
+        assertTrue(failOver.isFail(new ResourceAccessException("refused", new IOException(new IOException(
+                new HttpHostConnectException(new ConnectException("Connection refused"), new HttpHost("localhost")))))));
+        assertFalse(failOver.isFail(new ResourceAccessException("closed", new IOException("Stream closed"))));
+
+        failOver.setFailStatusRanges(new String[] { "500-502" });
+        failOver.setRetryStatus(new int[] { 429 });
+        failOver.setFailHeaders(new String[] { HttpHeaders.RETRY_AFTER });
+        failOver.setRetryExceptions(new Class<?>[] { IllegalStateException.class });
+        assertTrue(failOver.isFail(new HttpServerErrorException(HttpStatus.BAD_GATEWAY)));
+        assertTrue(failOver.isFail(503));
+        assertFalse(failOver.isFail(504));
+        assertTrue(failOver.isRetry(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)));
+        final HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "2");
+        assertTrue(failOver.isFail(429, headers));
+        assertFalse(failOver.isFail(200, headers));
+        assertEquals(FailureClassifier.Verdict.RETRY, failOver.getClassifier().classify(new RuntimeException(new IllegalStateException())));
+        assertEquals(FailureClassifier.Verdict.NONE, failOver.getClassifier().classify(new RuntimeException()));
+    }
+
+    @Test
+    void failAndRetry() {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        final FailureClassifier classifier = failOver.getClassifier();
+        failOver.setRetryStatus(new int[] { 503 });
+        failOver.setRetryExceptions(new Class<?>[] { SocketTimeoutException.class });
+        assertTrue(classifier != failOver.getClassifier());
+        assertTrue(failOver.isFail(503));
+        assertTrue(failOver.isRetry(503));
+        final ResourceAccessException timeout = new ResourceAccessException("timeout", new SocketTimeoutException("Read timed out"));
+        assertTrue(failOver.isFail(timeout));
+        assertTrue(failOver.isRetry(timeout));
+        assertEquals(FailureClassifier.Verdict.FAIL, failOver.getClassifier().classify(timeout));
+        assertThrows(NumberFormatException.class, () -> failOver.setFailStatusRanges(new String[] { "5xx" }));
+    }
+
+    @Test
+    void retryAfter() {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        final HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "5");
+        assertTrue(failOver.isFail(429, headers));
+        assertTrue(failOver.isFail(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)));
+        assertEquals(1000, failOver.getThrottleDuration(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)));
+        failOver.setThrottleDuration(2500);
+        assertEquals(2500, failOver.getThrottleDuration(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)));
+        assertEquals(5000, failOver.getThrottleDuration(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "", headers, null, null)));
+        assertEquals(5000, failOver.getRetryAfter(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "", headers, null, null)));
+        headers.set(HttpHeaders.RETRY_AFTER, "3600");
+        assertEquals(60000, failOver.getRetryAfter(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "", headers, null, null)));
+        headers.setDate(HttpHeaders.RETRY_AFTER, System.currentTimeMillis() - 1000);
+        assertEquals(1000, failOver.getRetryAfter(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "", headers, null, null)));
+        headers.set(HttpHeaders.RETRY_AFTER, "soon");
+        assertEquals(-1, failOver.getRetryAfter(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "", headers, null, null)));
+        assertEquals(-1, failOver.getRetryAfter(HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "", headers, null, null)));
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.flcit.springboot.http.client.core.loadbalancer.LoadBalancerClient;
+
+class DnsLoadBalancerProviderTest {
+
+    @Test
+    void expandAndRoute() throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api", exchange -> {
+            final byte[] body = exchange.getRequestHeaders().getFirst("Host").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        final int port = server.getAddress().getPort();
+        final LoadBalancerClient loadBalancerClient = loadBalancerClient("http://localhost:" + port + "/api", true);
+        final DnsRoutePlanner routePlanner = new DnsRoutePlanner(loadBalancerClient);
+        try (DnsLoadBalancerProvider provider = new DnsLoadBalancerProvider(
+                new String[] { "http://localhost:" + port + "/api", "http://127.0.0.2:9090" }, null, null, 60000, null);
+                CloseableHttpClient client = HttpClients.custom()
+                        .setRoutePlanner(routePlanner)
+                        .addInterceptorFirst(routePlanner)
+                        .build()) {
+            final Endpoint endpoint = provider.getEndpoint("http://127.0.0.1:" + port + "/api/resource");
+            assertNotNull(endpoint);
+            assertEquals("localhost", endpoint.getMetadata().get("host"));
+            assertNotNull(provider.getEndpoint("http://127.0.0.2:9090"));
+            assertNull(provider.getEndpoint("http://localhost:" + port + "/api"));
+            assertEquals("localhost", provider.getHostName("http", "127.0.0.1", port));
+            assertNull(provider.getHostName("http", "127.0.0.2", 9090));
+            assertEquals("localhost", loadBalancerClient.getHostName("http", "127.0.0.1", port));
+            final LoadBalancerClient other = loadBalancerClient("http://localhost:" + port + "/api", false);
+            assertFalse(other.isDns());
+            assertNull(other.getHostName("http", "127.0.0.1", port));
+            try (CloseableHttpResponse response = client.execute(new HttpGet(endpoint.getUrl()))) {
+                assertEquals("localhost:" + port, EntityUtils.toString(response.getEntity()));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static LoadBalancerClient loadBalancerClient(String url, boolean dns) {
+        final LoadBalancerClient res = new LoadBalancerClient();
+        res.setUrls(new String[] { url });
+        res.setDns(dns);
+        res.setActive(true);
+        res.init();
+        return res;
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.flcit.springboot.http.client.core.loadbalancer.domain.CircuitBreakerConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.FailOverConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.HealthProbeConfiguration;
+import org.flcit.springboot.http.client.core.loadbalancer.domain.SlidingWindowType;
+
+class FailOverLoadBalancerProviderTest {
+
+    private static final String URL_1 = "http://host1:8080/api";
+    private static final String URL_2 = "http://host2:8080/api";
+    private static final String URL_3 = "http://host3:8080/api";
+    private static final String[] URLS = { URL_1, URL_2, URL_3 };
+
+    @Test
+    void failSnapshot() {
+        final FailOverLoadBalancerProvider provider = new FailOverLoadBalancerProvider(URLS);
+        assertSame(provider.getUrls(), provider.getUrls());
+        assertEquals(URL_2, provider.fail(URL_2 + "/resource", 60000));
+        final String[] urls = provider.getUrls();
+        assertArrayEquals(new String[] { URL_1, URL_3 }, urls);
+        assertSame(urls, provider.getUrls());
+    }
+
+    @Test
+    void failExpiredTakeOk() {
+        final FailOverLoadBalancerProvider provider = new FailOverLoadBalancerProvider(URLS);
+        provider.fail(URL_2, -1);
+        assertArrayEquals(URLS, provider.getUrls());
+        provider.take(URL_2);
+        assertArrayEquals(new String[] { URL_1, URL_3 }, provider.getUrls());
+        provider.ok(URL_2 + "/resource");
+        assertArrayEquals(URLS, provider.getUrls());
+    }
+
+    @Test
+    void failAllReset() {
+        final FailOverLoadBalancerProvider provider = new FailOverLoadBalancerProvider(URLS);
+        provider.fail(URL_1, 60000);
+        provider.fail(URL_2, 60000);
+        assertArrayEquals(new String[] { URL_3 }, provider.getUrls());
+        provider.fail(URL_3, 60000);
+        assertArrayEquals(URLS, provider.getUrls());
+    }
+
+    @Test
+    void circuitBreaker() {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setActive(true);
+        failOver.setCircuitBreaker(new CircuitBreakerConfiguration());
+        failOver.getCircuitBreaker().setHalfOpenCalls(2);
+        final FailOverLoadBalancerProvider provider = new FailOverLoadBalancerProvider(URLS, null, failOver);
+        final Endpoint endpoint = provider.getEndpoint(URL_2);
+        provider.fail(endpoint, -1);
+        provider.fail(endpoint, -1);
+        assertArrayEquals(URLS, provider.getUrls());
+        for (int i = 0; i < 4; i++) {
+            provider.ok(endpoint, 1000);
+        }
+        provider.fail(endpoint, -1);
+        assertArrayEquals(URLS, provider.getUrls());
+        provider.fail(endpoint, 60000);
+        assertArrayEquals(new String[] { URL_1, URL_3 }, provider.getUrls());
+        provider.fail(endpoint, -1);
+        assertArrayEquals(URLS, provider.getUrls());
+        provider.take(endpoint);
+        assertArrayEquals(URLS, provider.getUrls());
+        provider.take(endpoint);
+        assertArrayEquals(new String[] { URL_1, URL_3 }, provider.getUrls());
+        provider.ok(endpoint, 1000);
+        assertArrayEquals(new String[] { URL_1, URL_3 }, provider.getUrls());
+        provider.ok(endpoint, 1000);
+        assertArrayEquals(URLS, provider.getUrls());
+        provider.fail(endpoint, 60000);
+        assertArrayEquals(URLS, provider.getUrls());
+    }
+
+    @Test
+    void circuitBreakerSlowCalls() {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setActive(true);
+        failOver.setCircuitBreaker(new CircuitBreakerConfiguration());
+        failOver.getCircuitBreaker().setSlidingWindowType(SlidingWindowType.time);
+        failOver.getCircuitBreaker().setSlowCallDuration(100);
+        failOver.getCircuitBreaker().setSlowCallRateThreshold(50);
+        final FailOverLoadBalancerProvider provider = new FailOverLoadBalancerProvider(URLS, null, failOver);
+        final Endpoint endpoint = provider.getEndpoint(URL_3);
+        provider.ok(endpoint, 1_000_000);
+        provider.ok(endpoint, 200_000_000);
+        provider.ok(endpoint, 200_000_000);
+        assertArrayEquals(URLS, provider.getUrls());
+        provider.ok(endpoint, 200_000_000);
+        assertArrayEquals(new String[] { URL_1, URL_2 }, provider.getUrls());
+    }
+
+    @Test
+    void outlierDetection() throws InterruptedException {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setActive(true);
+        failOver.getOutlierDetection().setActive(true);
+        failOver.getOutlierDetection().setInterval(100);
+        failOver.getOutlierDetection().setMinimumCalls(5);
+        final FailOverLoadBalancerProvider provider = new FailOverLoadBalancerProvider(URLS, null, failOver);
+        for (int i = 0; i < 10; i++) {
+            provider.ok(provider.getEndpoint(URL_1), 40_000_000);
+            provider.ok(provider.getEndpoint(URL_2), 100_000_000);
+            provider.ok(provider.getEndpoint(URL_3), 4_000_000_000L);
+        }
+        assertArrayEquals(URLS, provider.getUrls());
+        Thread.sleep(150);
+        provider.ok(provider.getEndpoint(URL_1), 40_000_000);
+        assertArrayEquals(new String[] { URL_1, URL_2 }, provider.getUrls());
+        for (int i = 0; i < 10; i++) {
+            provider.ok(provider.getEndpoint(URL_1), 40_000_000);
+            provider.ok(provider.getEndpoint(URL_2), 4_000_000_000L);
+        }
+        Thread.sleep(150);
+        provider.ok(provider.getEndpoint(URL_1), 40_000_000);
+        assertArrayEquals(new String[] { URL_1, URL_2 }, provider.getUrls());
+    }
+
+    @Test
+    void retryAfter() throws InterruptedException {
+        final FailOverConfiguration failOver = new FailOverConfiguration();
+        failOver.setActive(true);
+        failOver.setThrottleWeight(0.25);
+        final FailOverLoadBalancerProvider provider = new FailOverLoadBalancerProvider(URLS, null, failOver);
+        final Endpoint ejected = provider.getEndpoint(URL_2);
+        provider.eject(ejected, 100);
+        assertArrayEquals(new String[] { URL_1, URL_3 }, provider.getUrls());
+        final Endpoint throttled = provider.getEndpoint(URL_3);
+        provider.throttle(throttled, 100);
+        assertEquals(0.25, provider.getSlowStartFactor(throttled));
+        assertEquals(1, provider.getSlowStartFactor(provider.getEndpoint(URL_1)));
+        assertArrayEquals(new String[] { URL_1, URL_3 }, provider.getUrls());
+        Thread.sleep(150);
+        assertEquals(1, provider.getSlowStartFactor(throttled));
+        provider.take(ejected);
+        provider.ok(ejected, 1000);
+        assertArrayEquals(URLS, provider.getUrls());
+    }
+
+    @Test
+    void healthProbe() throws IOException, InterruptedException {
+        final AtomicReference<String> status = new AtomicReference<>("DOWN");
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/actuator/health", exchange -> {
+            final byte[] body = ("{\"status\":\"" + status.get() + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            final String url = "http://localhost:" + server.getAddress().getPort() + "/api";
+            final FailOverConfiguration failOver = new FailOverConfiguration();
+            failOver.setActive(true);
+            failOver.setFailMaxAttempt(1);
+            failOver.setHealthProbe(new HealthProbeConfiguration());
+            failOver.getHealthProbe().setActive(true);
+            failOver.getHealthProbe().setUrl("http://ignored/actuator/health");
+            failOver.getHealthProbe().setResponseFields(Collections.singletonMap("status", "UP"));
+            failOver.getHealthProbe().setInterval(20);
+            failOver.getHealthProbe().setJitter(5);
+            final AtomicInteger probes = new AtomicInteger();
+            failOver.getHealthProbe().setHttpClient(HttpClients.custom()
+                    .addInterceptorFirst((HttpRequestInterceptor) (request, context) -> probes.incrementAndGet())
+                    .build());
+            final FailOverLoadBalancerProvider provider = new FailOverLoadBalancerProvider(new String[] { URL_1, url }, null, failOver);
+            provider.fail(url + "/resource", -1);
+            Thread.sleep(200);
+            assertArrayEquals(new String[] { URL_1 }, provider.getUrls());
+            status.set("UP");
+            for (int i = 0; i < 100 && provider.getUrls().length == 1; i++) {
+                Thread.sleep(20);
+            }
+            assertArrayEquals(new String[] { URL_1, url }, provider.getUrls());
+            assertTrue(probes.get() > 0);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+}
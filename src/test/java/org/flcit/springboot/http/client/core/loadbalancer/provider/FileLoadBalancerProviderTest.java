@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.http.client.core.loadbalancer.provider;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileLoadBalancerProviderTest {
+
+    private static final String URL_1 = "http://host1:8080/api";
+    private static final String URL_2 = "http://host2:8080/api";
+    private static final String URL_3 = "http://host3:8080/api";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void yaml() throws IOException {
+        final Path file = write("endpoints.yml", "endpoints:\n"
+                + "  - " + URL_1 + "\n"
+                + "  - url: " + URL_2 + "\n"
+                + "    weight: 2.5\n"
+                + "    zone: b\n"
+                + "    metadata:\n"
+                + "      version: 2\n");
+        final Endpoint[] endpoints = FileLoadBalancerProvider.read(file);
+        assertEquals(2, endpoints.length);
+        assertEquals(URL_1, endpoints[0].getUrl());
+        assertEquals(2.5, endpoints[1].getWeight());
+        assertEquals("b", endpoints[1].getZone());
+        assertEquals("2", endpoints[1].getMetadata().get("version"));
+    }
+
+    @Test
+    void yamlUnsafeTag() throws IOException {
+        final Path file = write("endpoints.yaml", "endpoints: !!java.util.ArrayList [\"" + URL_1 + "\"]\n"
+                + "other: !!java.io.File [\"/tmp\"]\n");
+        assertThrows(RuntimeException.class, () -> FileLoadBalancerProvider.read(file));
+    }
+
+    @Test
+    void watch() throws IOException, InterruptedException {
+        final Path file = write("endpoints.json", "[\"" + URL_1 + "\", {\"url\": \"" + URL_2 + "\", \"zone\": \"a\"}]");
+        try (FileLoadBalancerProvider provider = new FileLoadBalancerProvider(file, 50, null)) {
+            assertArrayEquals(new String[] { URL_1, URL_2 }, provider.getUrls());
+            final Endpoint endpoint = provider.getEndpoint(URL_1);
+            write("endpoints.json", "{\"endpoints\": [\"" + URL_1 + "\", \"" + URL_3 + "\"]}");
+            await(provider, URL_3);
+            assertArrayEquals(new String[] { URL_1, URL_3 }, provider.getUrls());
+            assertSame(endpoint, provider.getEndpoint(URL_1));
+            write("endpoints.json", "{\"endpoints\": ");
+            write("other.json", "[]");
+            Thread.sleep(300);
+            assertArrayEquals(new String[] { URL_1, URL_3 }, provider.getUrls());
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void await(LoadBalancerProvider provider, String url) throws InterruptedException {
+        for (int i = 0; i < 200 && provider.getEndpoint(url) == null; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+}